@@ -7,9 +7,9 @@ import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.Matrix;
-import android.graphics.Rect;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.os.Vibrator;
 import android.util.Log;
 import android.view.KeyEvent;
@@ -28,26 +28,77 @@ import android.widget.RelativeLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import com.google.zxing.BarcodeFormat;
 import com.google.zxing.Result;
 import com.google.zxing.ResultPoint;
+import com.google.zxing.ResultPointCallback;
+import com.samonxu.qrcode.core.CropRect;
+import com.samonxu.qrcode.core.Size;
+import com.samonxu.qrcode.core.decode.DecodeProfile;
+import com.samonxu.qrcode.core.decode.GovernorState;
+import com.samonxu.qrcode.core.decode.InversionScheduler;
+import com.samonxu.qrcode.core.decode.ReaderStats;
+import com.samonxu.qrcode.core.decode.ResultDeduplicator;
+import com.samonxu.qrcode.core.decode.ScanGovernor;
+import com.samonxu.qrcode.core.source.BaseLuminanceSource;
+import com.samonxu.qrcode.core.source.PlanarYUVLuminanceSource;
+import com.samonxu.qrcode.core.source.RGBLuminanceSource;
 import com.samonxu.qrcode.demo.camera.CameraManager;
+import com.samonxu.qrcode.demo.camera.CameraStartListener;
 import com.samonxu.qrcode.demo.camera.PreviewFrameShotListener;
-import com.samonxu.qrcode.demo.camera.Size;
+import com.samonxu.qrcode.demo.camera.TorchStateListener;
 import com.samonxu.qrcode.demo.decode.DecodeListener;
 import com.samonxu.qrcode.demo.decode.DecodeThread;
-import com.samonxu.qrcode.demo.decode.LuminanceSource;
-import com.samonxu.qrcode.demo.decode.PlanarYUVLuminanceSource;
-import com.samonxu.qrcode.demo.decode.RGBLuminanceSource;
+import com.samonxu.qrcode.demo.decode.DecodeWorker;
+import com.samonxu.qrcode.demo.decode.MultiDecodeListener;
+import com.samonxu.qrcode.demo.result.ScanResultStore;
+import com.samonxu.qrcode.demo.util.BatteryStateReceiver;
 import com.samonxu.qrcode.demo.util.DocumentUtil;
+import com.samonxu.qrcode.demo.util.StartupTrace;
 import com.samonxu.qrcode.demo.view.CaptureView;
 
-public class CaptureActivity extends Activity implements SurfaceHolder.Callback, PreviewFrameShotListener, DecodeListener,
-        OnCheckedChangeListener, OnClickListener {
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CaptureActivity extends Activity implements SurfaceHolder.Callback, PreviewFrameShotListener, MultiDecodeListener,
+        CameraStartListener, TorchStateListener, OnCheckedChangeListener, OnClickListener {
 
     private static final long VIBRATE_DURATION = 200L;
     private static final int REQUEST_CODE_ALBUM = 0;
+    private static final long MULTI_COLLECT_MS = 800L;
+    public static final String EXTRA_MULTI_DECODE = "multi_decode";
+    public static final String EXTRA_RECORD_FRAMES = "record_frames";
+    /** 解码profile的名字，参见{@link DecodeProfile}，不传时识别全部格式 */
+    public static final String EXTRA_DECODE_PROFILE = "decode_profile";
+    /** profile为{@link DecodeProfile#CUSTOM}时识别的格式，BarcodeFormat名字的String数组 */
+    public static final String EXTRA_DECODE_FORMATS = "decode_formats";
+    /** 是否按本次扫描中各格式的命中率调整reader的尝试顺序 */
+    public static final String EXTRA_ADAPTIVE_ORDER = "adaptive_order";
     public static final String EXTRA_RESULT = "result";
-    public static final String EXTRA_BITMAP = "bitmap";
+    public static final String EXTRA_RESULTS = "results";
+    public static final String EXTRA_RESULT_TOKEN = "result_token";
+
+    /**
+     * 最近一帧预览，供扫描框解码结束后的整帧扫描使用
+     */
+    private static class PreviewFrame {
+        final byte[] data;
+        final Size size;
+        final CropRect window;
+
+        PreviewFrame(byte[] data, Size size, CropRect window) {
+            this.data = data;
+            this.size = size;
+            this.window = window;
+        }
+    }
+
+    // Shared across scans so a user who keeps scanning light-on-dark labels gets them first,
+    // the miss count returns it to normal polarity once such labels stop showing up
+    private static final InversionScheduler sInversionScheduler = new InversionScheduler();
+    // Shared across scans, a single code scan decodes one frame and would never build up the adaptive order
+    private static final ReaderStats sReaderStats = new ReaderStats();
 
     private SurfaceView previewSv;
     private CaptureView captureView;
@@ -57,13 +108,34 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback,
 
     private CameraManager mCameraManager;
     private DecodeThread mDecodeThread;
-    private Rect previewFrameRect = null;
-    private boolean isDecoding = false;
+    private DecodeWorker mDecodeWorker;
+    private volatile CropRect previewFrameRect = null;
+    private volatile boolean isDecoding = false;
+    private boolean isUpdatingFlashCb = false;
+    private boolean isSurfaceReady = false;
+    private boolean isMultiDecode = false;
+    private boolean isRecordFrames = false;
+    private boolean isFullFrameScanEnabled = false;
+    private volatile PreviewFrame mLastFrame;
+    private DecodeProfile mDecodeProfile;
+    private ResultDeduplicator mDeduplicator;
+    private ScanGovernor mGovernor;
+    private BatteryStateReceiver mBatteryReceiver;
+    private List<String> multiResults = new ArrayList<String>();
+    private Bitmap multiBitmap;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupTrace.begin();
+        // Bring the camera up and warm the decoder while the layout is being inflated
+        mCameraManager = new CameraManager(this);
+        mCameraManager.setPreviewFrameShotListener(this);
+        mCameraManager.setTorchStateListener(this);
+        mCameraManager.openCameraAsync();
+        DecodeThread.prewarm();
         setContentView(R.layout.activity_capture);
+        StartupTrace.mark(StartupTrace.LAYOUT_INFLATED);
         previewSv = (SurfaceView) findViewById(R.id.sv_preview);
         captureView = (CaptureView) findViewById(R.id.cv_capture);
         flashCb = (CheckBox) findViewById(R.id.cb_capture_flash);
@@ -77,15 +149,77 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback,
             albumBtn.setVisibility(View.GONE);
         }
         previewSv.getHolder().addCallback(this);
-        mCameraManager = new CameraManager(this);
-        mCameraManager.setPreviewFrameShotListener(this);
+        isMultiDecode = getIntent().getBooleanExtra(EXTRA_MULTI_DECODE, false);
+        isRecordFrames = getIntent().getBooleanExtra(EXTRA_RECORD_FRAMES, false);
+        mDeduplicator = new ResultDeduplicator(0);
+        mDecodeWorker = new DecodeWorker(this, cameraPointCallback);
+        mDecodeWorker.setMultiDecode(isMultiDecode);
+        mDecodeProfile = parseDecodeProfile(getIntent());
+        mDecodeWorker.setDecodeProfile(mDecodeProfile);
+        mDecodeWorker.setReaderStats(sReaderStats);
+        // A second worker only pays off when a core is left for the camera and UI threads
+        int processors = Runtime.getRuntime().availableProcessors();
+        int activeWorkers = processors >= 4 ? 2 : 1;
+        mGovernor = new ScanGovernor(activeWorkers);
+        // Between frames of an active scan there is no idle time, a full frame scan then needs a core of its own
+        isFullFrameScanEnabled = processors >= activeWorkers + 2;
+        mGovernor.setListener(governorListener);
+        mDecodeWorker.setWorkerCount(mGovernor.getWorkerCount());
+        mBatteryReceiver = new BatteryStateReceiver(mGovernor);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        mBatteryReceiver.register(this);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        mBatteryReceiver.unregister(this);
+    }
+
+    private final ScanGovernor.Listener governorListener = new ScanGovernor.Listener() {
+        @Override
+        public void onModeChanged(final GovernorState state) {
+            // Called on the camera or a decode thread
+            captureView.post(new Runnable() {
+                @Override
+                public void run() {
+                    applyGovernorState(state);
+                }
+            });
+        }
+    };
 
+    private void applyGovernorState(GovernorState state) {
+        Log.d("CaptureActivity", "Scan governor: " + state);
+        mDecodeWorker.setWorkerCount(state.workerCount);
+        mCameraManager.setPreviewFpsLimit(state.maxPreviewFps);
+        if (!isSurfaceReady) {
+            return;
+        }
+        // The scan line is redrawn every display frame, stop it while nothing is in view
+        if (state.mode == ScanGovernor.Mode.IDLE) {
+            captureView.stopScanAnimation();
+        } else {
+            captureView.startScanAnimation();
+        }
     }
 
     @Override
     public void surfaceCreated(SurfaceHolder holder) {
-        mCameraManager.initCamera(holder);
-        if (!mCameraManager.isCameraAvailable()) {
+        isSurfaceReady = true;
+        mCameraManager.startPreviewAsync(holder, this);
+    }
+
+    @Override
+    public void onCameraStarted(boolean success) {
+        if (!isSurfaceReady) {
+            return;
+        }
+        if (!success) {
             Toast.makeText(CaptureActivity.this, R.string.capture_camera_failed, Toast.LENGTH_SHORT).show();
             finish();
             return;
@@ -93,12 +227,59 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback,
         if (mCameraManager.isFlashlightAvailable()) {
             flashCb.setEnabled(true);
         }
-        mCameraManager.startPreview();
+        if (previewFrameRect == null) {
+            CropRect frameRect = mCameraManager.getPreviewFrameRect(captureView.getFrameRect());
+            // Codes closer than 1/8 of the scan window are treated as the same code
+            mDeduplicator.setTolerance(frameRect.width() / 8f);
+            previewFrameRect = frameRect;
+        }
+        if (isRecordFrames) {
+            // Each preview session gets its own file, it is closed together with the camera
+            mCameraManager.startRecording(createCaptureFile(), previewFrameRect);
+        }
+        mCameraManager.setPreviewFpsLimit(mGovernor.getMaxPreviewFps());
+        if (mGovernor.getMode() != ScanGovernor.Mode.IDLE) {
+            captureView.startScanAnimation();
+        }
         if (!isDecoding) {
             mCameraManager.requestPreviewFrameShot();
         }
     }
 
+    private File createCaptureFile() {
+        File dir = getExternalFilesDir("captures");
+        if (dir == null) {
+            dir = new File(getFilesDir(), "captures");
+        }
+        // Created and opened on the camera thread
+        return new File(dir, "capture_" + System.currentTimeMillis() + ".qrcap");
+    }
+
+    /**
+     * 从extras中读取解码profile，没有指定时返回null，识别全部格式；无效的profile或格式记录日志后识别全部格式
+     */
+    private static DecodeProfile parseDecodeProfile(Intent intent) {
+        String name = intent.getStringExtra(EXTRA_DECODE_PROFILE);
+        boolean adaptive = intent.getBooleanExtra(EXTRA_ADAPTIVE_ORDER, false);
+        if (name == null) {
+            return adaptive ? DecodeProfile.createAll().withAdaptive(true) : null;
+        }
+        String[] formatNames = intent.getStringArrayExtra(EXTRA_DECODE_FORMATS);
+        try {
+            List<BarcodeFormat> formats = null;
+            if (formatNames != null) {
+                formats = new ArrayList<BarcodeFormat>();
+                for (String formatName : formatNames) {
+                    formats.add(BarcodeFormat.valueOf(formatName));
+                }
+            }
+            return DecodeProfile.forName(name, formats, adaptive);
+        } catch (IllegalArgumentException e) {
+            Log.w("CaptureActivity", "Invalid decode profile, decoding all formats", e);
+            return DecodeProfile.createAll().withAdaptive(adaptive);
+        }
+    }
+
     @Override
     public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
 
@@ -106,37 +287,125 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback,
 
     @Override
     public void surfaceDestroyed(SurfaceHolder holder) {
-        mCameraManager.stopPreview();
+        isSurfaceReady = false;
+        Log.d("CaptureActivity", "Light metrics: " + mCameraManager.getLightMetrics());
+        Log.d("CaptureActivity", "Scan governor: " + mGovernor.getState());
+        Log.d("CaptureActivity", "Decode profile: " + mDecodeProfile + ", readers: "
+                + sReaderStats.report());
+        sReaderStats.resetCounts();
+        captureView.stopScanAnimation();
         if (mDecodeThread != null) {
             mDecodeThread.cancel();
         }
-        mCameraManager.release();
+        mCameraManager.closeCamera();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        captureView.removeCallbacks(finishMultiDecodeRunnable);
+        mDecodeWorker.quit();
+        mCameraManager.quit();
     }
 
     @Override
     public void onPreviewFrame(byte[] data, Size dataSize) {
-        if (mDecodeThread != null) {
-            mDecodeThread.cancel();
-        }
-        if (previewFrameRect == null) {
-            previewFrameRect = mCameraManager.getPreviewFrameRect(captureView.getFrameRect());
-        }
+        // Called on the camera thread, the frame goes straight to the decode worker
+        StartupTrace.mark(StartupTrace.FIRST_FRAME);
         PlanarYUVLuminanceSource luminanceSource = new PlanarYUVLuminanceSource(data, dataSize, previewFrameRect);
-        mDecodeThread = new DecodeThread(luminanceSource, CaptureActivity.this);
+        if (sInversionScheduler.nextFrameInverted()) {
+            // Zero-copy view, each frame is still decoded only once
+            luminanceSource = luminanceSource.invert();
+        }
+        long now = SystemClock.uptimeMillis();
+        mGovernor.onFrame(data, dataSize.width, previewFrameRect, now);
         isDecoding = true;
-        mDecodeThread.execute();
+        if (!mDecodeWorker.decode(luminanceSource)) {
+            // The worker has quit, the activity is finishing
+            isDecoding = false;
+            return;
+        }
+        mLastFrame = new PreviewFrame(data, dataSize, previewFrameRect);
+        if (mDecodeWorker.getInFlightCount() < mGovernor.getWorkerCount() && mGovernor.getFrameIntervalMs() == 0) {
+            // Keep every worker busy, the next frame is decoded while this one is still running
+            mCameraManager.requestPreviewFrameShot();
+        }
+    }
+
+    /**
+     * 一帧解码结束后按{@link ScanGovernor}决定的间隔请求下一帧
+     */
+    private void requestNextFrame() {
+        mCameraManager.requestPreviewFrameShot(mGovernor.getFrameIntervalMs());
+    }
+
+    @Override
+    public void onDecodeSuccess(Result result, BaseLuminanceSource source, Bitmap bitmap) {
+        StartupTrace.mark(StartupTrace.FIRST_DECODE);
+        if (source instanceof PlanarYUVLuminanceSource) {
+            sInversionScheduler.onDecodeFinished(source.isInverted(), true);
+            mGovernor.onDecodeFinished(true, SystemClock.uptimeMillis());
+        }
+        mCameraManager.onDecodeSuccess();
+        vibrate();
+        isDecoding = false;
+        finishWithResults(new String[]{result.getText()}, bitmap);
     }
 
     @Override
-    public void onDecodeSuccess(Result result, LuminanceSource source, Bitmap bitmap) {
+    public void onMultiDecodeSuccess(Result[] results, BaseLuminanceSource source, Bitmap bitmap) {
+        StartupTrace.mark(StartupTrace.FIRST_DECODE);
+        if (source instanceof PlanarYUVLuminanceSource) {
+            sInversionScheduler.onDecodeFinished(source.isInverted(), true);
+            mGovernor.onDecodeFinished(true, SystemClock.uptimeMillis());
+        }
+        isDecoding = false;
+        if (source instanceof RGBLuminanceSource) {
+            String[] texts = new String[results.length];
+            for (int i = 0; i < results.length; i++) {
+                texts[i] = results[i].getText();
+            }
+            vibrate();
+            finishWithResults(texts, bitmap);
+            return;
+        }
+        mCameraManager.onDecodeSuccess();
+        Result[] freshResults = mDeduplicator.filter(results);
+        if (freshResults.length > 0) {
+            if (multiResults.isEmpty()) {
+                // Keep scanning a little longer to pick up the codes next to the first one
+                vibrate();
+                multiBitmap = bitmap;
+                captureView.postDelayed(finishMultiDecodeRunnable, MULTI_COLLECT_MS);
+            } else {
+                bitmap.recycle();
+            }
+            for (Result result : freshResults) {
+                multiResults.add(result.getText());
+            }
+        } else {
+            bitmap.recycle();
+        }
+        requestNextFrame();
+    }
+
+    private Runnable finishMultiDecodeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mDecodeThread != null) {
+                mDecodeThread.cancel();
+            }
+            finishWithResults(multiResults.toArray(new String[multiResults.size()]), multiBitmap);
+        }
+    };
+
+    private void vibrate() {
         Vibrator vibrator = (Vibrator) getSystemService(VIBRATOR_SERVICE);
         vibrator.vibrate(VIBRATE_DURATION);
-        isDecoding = false;
+    }
+
+    private void finishWithResults(String[] texts, Bitmap bitmap) {
+        mDecodeWorker.quit();
         if(bitmap.getWidth()>100||bitmap.getHeight()>100){
             Matrix matrix = new Matrix();
             matrix.postScale(100f/bitmap.getWidth(),100f/bitmap.getHeight());
@@ -145,28 +414,81 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback,
             bitmap = resizeBmp;
         }
         Intent resultData = new Intent();
-        resultData.putExtra(EXTRA_RESULT, result.getText());
-        resultData.putExtra(EXTRA_BITMAP, bitmap);
+        resultData.putExtra(EXTRA_RESULT, texts[0]);
+        resultData.putExtra(EXTRA_RESULTS, texts);
+        // Only the token crosses the Intent, the thumbnail stays in this process
+        resultData.putExtra(EXTRA_RESULT_TOKEN, ScanResultStore.getInstance(this).putThumbnail(bitmap));
         setResult(RESULT_OK, resultData);
         finish();
     }
 
+    /**
+     * 相机帧解码失败时在解码线程中回调，相册图片解码失败时在UI线程中回调
+     */
     @Override
-    public void onDecodeFailed(LuminanceSource source) {
+    public void onDecodeFailed(BaseLuminanceSource source) {
         if (source instanceof RGBLuminanceSource) {
             Toast.makeText(CaptureActivity.this, R.string.capture_decode_failed, Toast.LENGTH_SHORT).show();
+        } else {
+            sInversionScheduler.onDecodeFinished(source.isInverted(), false);
+            mGovernor.onDecodeFinished(false, SystemClock.uptimeMillis());
+            scanFullFrame();
         }
         isDecoding = false;
-        mCameraManager.requestPreviewFrameShot();
+        requestNextFrame();
     }
 
+    /**
+     * 扫描框解码失败后，在空闲时间里对最近一帧做整帧的后备扫描，报告扫描框外的码。
+     * 还有扫描框的帧在解码时不扫描；降频时两帧之间本来就有空闲，全速扫描时只在有多余核心的设备上进行。
+     * IDLE时画面中没有码的迹象，为了省电不扫描。
+     */
+    private void scanFullFrame() {
+        PreviewFrame frame = mLastFrame;
+        if (frame == null) {
+            return;
+        }
+        ScanGovernor.Mode mode = mGovernor.getMode();
+        if (mode == ScanGovernor.Mode.IDLE || (mode == ScanGovernor.Mode.ACTIVE && !isFullFrameScanEnabled)) {
+            return;
+        }
+        mDecodeWorker.decodeFullFrame(frame.data, frame.size, frame.window, SystemClock.uptimeMillis());
+    }
+
+    /**
+     * album图片的可能点，只用于显示
+     */
     @Override
     public void foundPossibleResultPoint(ResultPoint point) {
         captureView.addPossibleResultPoint(point);
     }
 
+    /**
+     * 相机帧的可能点，还用于自动变焦和扫描节奏，album图片的点不能影响相机
+     */
+    private final ResultPointCallback cameraPointCallback = new ResultPointCallback() {
+        @Override
+        public void foundPossibleResultPoint(ResultPoint point) {
+            captureView.addPossibleResultPoint(point);
+            mCameraManager.onPossibleResultPoint(point);
+            mGovernor.onPossibleResultPoint(SystemClock.uptimeMillis());
+        }
+    };
+
+    @Override
+    public void onTorchStateChanged(boolean on) {
+        isUpdatingFlashCb = true;
+        flashCb.setChecked(on);
+        isUpdatingFlashCb = false;
+    }
+
     @Override
     public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+        if (isUpdatingFlashCb) {
+            return;
+        }
+        // The user takes over the torch once it is toggled by hand
+        mCameraManager.setAutoLightEnabled(false);
         if (isChecked) {
             mCameraManager.enableFlashlight();
         } else {
@@ -227,6 +549,8 @@ public class CaptureActivity extends Activity implements SurfaceHolder.Callback,
                 cameraBitmap.getPixels(pixels, 0, width, 0, 0, width, height);
                 RGBLuminanceSource luminanceSource = new RGBLuminanceSource(pixels, new Size(width, height));
                 mDecodeThread = new DecodeThread(luminanceSource, CaptureActivity.this);
+                mDecodeThread.setMultiDecode(isMultiDecode);
+                mDecodeThread.setDecodeProfile(mDecodeProfile);
                 isDecoding = true;
                 mDecodeThread.execute();
             }
@@ -2,12 +2,14 @@ package com.samonxu.qrcode.demo;
 
 import android.app.Activity;
 import android.content.Intent;
-import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.view.View;
+import android.widget.CheckBox;
 import android.widget.ImageView;
 import android.widget.TextView;
 
+import com.samonxu.qrcode.demo.result.ScanResultStore;
+
 /**
  * Created by Samon Xu on 2016/03/22 0022.
  */
@@ -15,6 +17,7 @@ public class MainActivity extends Activity implements View.OnClickListener {
 
     private TextView resultTv;
     private ImageView resultIv;
+    private CheckBox recordCb;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -22,19 +25,38 @@ public class MainActivity extends Activity implements View.OnClickListener {
         setContentView(R.layout.activity_main);
         resultTv = (TextView) findViewById(R.id.tv_result);
         resultIv = (ImageView)findViewById(R.id.iv_result);
+        recordCb = (CheckBox) findViewById(R.id.cb_record_frames);
     }
 
     @Override
     public void onClick(View v) {
-        startActivityForResult(new Intent(MainActivity.this, CaptureActivity.class), 0);
+        Intent intent = new Intent(MainActivity.this, CaptureActivity.class);
+        intent.putExtra(CaptureActivity.EXTRA_MULTI_DECODE, v.getId() == R.id.btn_capture_multi);
+        intent.putExtra(CaptureActivity.EXTRA_RECORD_FRAMES, recordCb.isChecked());
+        startActivityForResult(intent, 0);
     }
 
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
         if (requestCode == 0 && resultCode == RESULT_OK) {
-            resultTv.setText(data.getStringExtra(CaptureActivity.EXTRA_RESULT));
-            resultIv.setImageBitmap((Bitmap)data.getParcelableExtra(CaptureActivity.EXTRA_BITMAP));
+            String[] results = data.getStringArrayExtra(CaptureActivity.EXTRA_RESULTS);
+            if (results != null) {
+                StringBuilder builder = new StringBuilder();
+                for (String result : results) {
+                    if (builder.length() > 0) {
+                        builder.append('\n');
+                    }
+                    builder.append(result);
+                }
+                resultTv.setText(builder);
+            } else {
+                resultTv.setText(data.getStringExtra(CaptureActivity.EXTRA_RESULT));
+            }
+            long token = data.getLongExtra(CaptureActivity.EXTRA_RESULT_TOKEN, ScanResultStore.NO_TOKEN);
+            ScanResultStore store = ScanResultStore.getInstance(this);
+            resultIv.setImageBitmap(store.getThumbnail(token));
+            store.remove(token);
         } else {
             resultTv.setText("");
             resultIv.setImageDrawable(null);
@@ -0,0 +1,318 @@
+package com.samonxu.qrcode.demo.camera;
+
+import android.util.Log;
+
+import com.google.zxing.ResultPoint;
+import com.google.zxing.qrcode.detector.FinderPattern;
+import com.samonxu.qrcode.core.CropRect;
+import com.samonxu.qrcode.core.Size;
+
+import java.util.List;
+
+/**
+ * 根据解码时找到的二维码定位点估计码的模块大小，码太小解不出时逐级放大相机变焦，直到模块达到可以解码的大小。
+ * <p>
+ * 最近一段时间内位置相近、模块大小一致的定位点视为同一个码，在不同帧中重复出现、且其中3个构成二维码的三个角时才认为找到了码。
+ * 变焦以预览图像中心为中心放大，每次放大的倍数受扫描框限制，保证放大后码仍完整地留在扫描框内。
+ * 每次变焦后等待画面稳定，并丢弃变焦前的定位点。解码成功后，或变焦后一段时间内没有再找到码时，恢复到不变焦。
+ * </p>
+ * onPossibleResultPoint在解码线程中调用，onFrame在相机线程中调用，其余方法可以在任意线程调用。
+ */
+class AutoZoomController {
+
+	interface Callback {
+		void onZoomDecision(int zoom);
+	}
+
+	private static final String TAG = "AutoZoomController";
+
+	// zxing reads sharp codes at about 2 pixels per module, preview frames need some headroom for blur
+	private static final float TARGET_MODULE_SIZE = 4f;
+	private static final float MIN_STEP_FACTOR = 1.15f;
+	private static final float MAX_STEP_FACTOR = 2.5f;
+	// Finder pattern centers are 14 modules apart in a version 1 code and 50 in version 10
+	private static final float MIN_CODE_MODULES = 12f;
+	private static final float MAX_CODE_MODULES = 60f;
+	private static final float MAX_SIDE_RATIO = 1.25f;
+	// About 90 +- 15 degrees, leaves room for perspective
+	private static final float MAX_CORNER_COSINE = 0.26f;
+	private static final float MAX_MODULE_SIZE_RATIO = 1.5f;
+	// The same finder pattern found again in a later frame
+	private static final float SAME_PATTERN_MODULES = 2f;
+	// From a finder pattern center to the code edge, plus the quiet zone
+	private static final float EDGE_MODULES = 3.5f + 4f;
+	private static final float WINDOW_MARGIN = 0.05f;
+	private static final int MIN_SIGHTINGS = 2;
+	private static final int MAX_PATTERNS = 64;
+	private static final long PATTERN_WINDOW_MS = 800L;
+	private static final long SETTLE_MS = 500L;
+	private static final long RESET_TIMEOUT_MS = 4000L;
+
+	private final Callback callback;
+
+	// Ring buffer of recent finder patterns, relative to the scan window
+	private final float[] patternX = new float[MAX_PATTERNS];
+	private final float[] patternY = new float[MAX_PATTERNS];
+	private final float[] patternSize = new float[MAX_PATTERNS];
+	private final long[] patternTime = new long[MAX_PATTERNS];
+	private int patternCount;
+	private int nextPattern;
+	private final int[] distinct = new int[MAX_PATTERNS];
+	private final int[] sightings = new int[MAX_PATTERNS];
+	private final int[] corners = new int[3];
+
+	private boolean isEnabled = true;
+	private List<Integer> zoomRatios;
+	private CropRect windowRect;
+	private Size frameSize;
+
+	private int zoom;
+	private long settleUntil;
+	// Last zoom change or last time the code was seen, whichever is later
+	private long lastActive;
+
+	AutoZoomController(Callback callback) {
+		this.callback = callback;
+	}
+
+	synchronized void setCapabilities(CameraCapabilities capabilities) {
+		zoomRatios = capabilities.isZoomSupported() ? capabilities.getZoomRatios() : null;
+		if (zoomRatios != null && zoomRatios.size() < 2) {
+			zoomRatios = null;
+		}
+		// A newly opened camera starts unzoomed
+		zoom = 0;
+		clearPatterns();
+	}
+
+	/**
+	 * @param windowRect
+	 *                  解码使用的预览图像区域，定位点坐标相对于这个区域
+	 * @param frameSize
+	 *                  旋转后的预览图像大小
+	 */
+	synchronized void setWindow(CropRect windowRect, Size frameSize) {
+		this.windowRect = new CropRect(windowRect);
+		this.frameSize = new Size(frameSize);
+		clearPatterns();
+	}
+
+	synchronized void setEnabled(boolean enabled, long now) {
+		isEnabled = enabled;
+		if (!enabled) {
+			reset(now);
+		}
+	}
+
+	synchronized int getZoom() {
+		return zoom;
+	}
+
+	synchronized void onPossibleResultPoint(ResultPoint point, long now) {
+		// Only QR finder patterns carry a module size
+		if (!isEnabled || zoomRatios == null || windowRect == null || !(point instanceof FinderPattern)
+				|| now < settleUntil) {
+			return;
+		}
+		patternX[nextPattern] = point.getX();
+		patternY[nextPattern] = point.getY();
+		patternSize[nextPattern] = ((FinderPattern) point).getEstimatedModuleSize();
+		patternTime[nextPattern] = now;
+		int newest = nextPattern;
+		nextPattern = (nextPattern + 1) % MAX_PATTERNS;
+		patternCount = Math.min(patternCount + 1, MAX_PATTERNS);
+		updateZoom(newest, now);
+	}
+
+	synchronized void onFrame(long now) {
+		if (zoom != 0 && now - lastActive >= RESET_TIMEOUT_MS) {
+			Log.d(TAG, "No code seen for " + RESET_TIMEOUT_MS + "ms, zoom reset");
+			reset(now);
+		}
+	}
+
+	/**
+	 * 解码成功后调用，下一次扫描从不变焦开始
+	 */
+	synchronized void onDecodeSuccess(long now) {
+		reset(now);
+	}
+
+	private void reset(long now) {
+		clearPatterns();
+		if (zoom != 0) {
+			changeZoom(0, now);
+		}
+	}
+
+	/**
+	 * 把最新的定位点和它附近模块大小一致的定位点聚在一起，从中找出二维码的三个定位点，码太小时计算放大倍数
+	 */
+	private void updateZoom(int newest, long now) {
+		float moduleSize = patternSize[newest];
+		if (moduleSize <= 0) {
+			return;
+		}
+		float maxDistance = MAX_CODE_MODULES * moduleSize;
+		float samePattern = SAME_PATTERN_MODULES * moduleSize;
+		int distinctCount = 0;
+		for (int i = 0; i < patternCount; i++) {
+			if (now - patternTime[i] > PATTERN_WINDOW_MS) {
+				continue;
+			}
+			float ratio = patternSize[i] / moduleSize;
+			if (ratio > MAX_MODULE_SIZE_RATIO || ratio < 1 / MAX_MODULE_SIZE_RATIO
+					|| distance(i, newest) > maxDistance) {
+				continue;
+			}
+			boolean isDistinct = true;
+			for (int j = 0; j < distinctCount; j++) {
+				if (distance(i, distinct[j]) <= samePattern) {
+					sightings[j]++;
+					isDistinct = false;
+					break;
+				}
+			}
+			if (isDistinct) {
+				sightings[distinctCount] = 1;
+				distinct[distinctCount++] = i;
+			}
+		}
+		// zxing reports each pattern once per frame, noise rarely shows up at the same place twice
+		int confirmedCount = 0;
+		for (int j = 0; j < distinctCount; j++) {
+			if (sightings[j] >= MIN_SIGHTINGS) {
+				distinct[confirmedCount++] = distinct[j];
+			}
+		}
+		if (confirmedCount < 3 || !findCodeCorners(confirmedCount)) {
+			return;
+		}
+		lastActive = now;
+		float median = median(patternSize[corners[0]], patternSize[corners[1]], patternSize[corners[2]]);
+		if (median >= TARGET_MODULE_SIZE) {
+			// Large enough, failing to decode has other causes
+			return;
+		}
+		float factor = Math.min(TARGET_MODULE_SIZE / median, MAX_STEP_FACTOR);
+		factor = Math.min(factor, getFitFactor(median));
+		if (factor < MIN_STEP_FACTOR) {
+			return;
+		}
+		int current = zoomRatios.get(zoom);
+		float targetRatio = current * factor;
+		int target = zoom;
+		for (int i = zoom + 1; i < zoomRatios.size() && zoomRatios.get(i) <= targetRatio; i++) {
+			target = i;
+		}
+		if (target != zoom) {
+			Log.d(TAG, "Module size " + median + "px, zoom " + current + " -> " + zoomRatios.get(target));
+			changeZoom(target, now);
+		}
+	}
+
+	/**
+	 * 找出构成二维码三个角的定位点：拐角到另外两点的距离相近且互相垂直，距离符合二维码的模块数。
+	 * 噪声和纹理也会产生候选定位点，只按距离聚类会把它们误认为码。
+	 *
+	 * @return 是否找到，找到时corners依次为一侧的角、拐角和另一侧的角
+	 */
+	private boolean findCodeCorners(int count) {
+		for (int j = 0; j < count; j++) {
+			int b = distinct[j];
+			for (int k = 0; k < count; k++) {
+				int a = distinct[k];
+				for (int l = k + 1; l < count; l++) {
+					int c = distinct[l];
+					if (a == b || c == b) {
+						continue;
+					}
+					float ab = distance(a, b);
+					float cb = distance(c, b);
+					if (Math.max(ab, cb) > Math.min(ab, cb) * MAX_SIDE_RATIO) {
+						continue;
+					}
+					float modules = (ab + cb) / 2 / patternSize[b];
+					if (modules < MIN_CODE_MODULES || modules > MAX_CODE_MODULES) {
+						continue;
+					}
+					float cos = ((patternX[a] - patternX[b]) * (patternX[c] - patternX[b])
+							+ (patternY[a] - patternY[b]) * (patternY[c] - patternY[b])) / (ab * cb);
+					if (Math.abs(cos) > MAX_CORNER_COSINE) {
+						continue;
+					}
+					corners[0] = a;
+					corners[1] = b;
+					corners[2] = c;
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static float median(float a, float b, float c) {
+		return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+	}
+
+	/**
+	 * @return 码放大后仍留在扫描框内的最大倍数
+	 */
+	private float getFitFactor(float moduleSize) {
+		float edge = EDGE_MODULES * moduleSize;
+		int a = corners[0], b = corners[1], c = corners[2];
+		// The fourth corner has no finder pattern
+		float dX = patternX[a] + patternX[c] - patternX[b];
+		float dY = patternY[a] + patternY[c] - patternY[b];
+		float left = Math.min(Math.min(patternX[a], patternX[b]), Math.min(patternX[c], dX)) - edge;
+		float right = Math.max(Math.max(patternX[a], patternX[b]), Math.max(patternX[c], dX)) + edge;
+		float top = Math.min(Math.min(patternY[a], patternY[b]), Math.min(patternY[c], dY)) - edge;
+		float bottom = Math.max(Math.max(patternY[a], patternY[b]), Math.max(patternY[c], dY)) + edge;
+		// Zoom scales around the frame center, convert to frame coordinates
+		float centerX = frameSize.width / 2f;
+		float centerY = frameSize.height / 2f;
+		float marginX = windowRect.width() * WINDOW_MARGIN;
+		float marginY = windowRect.height() * WINDOW_MARGIN;
+		float factor = Float.MAX_VALUE;
+		factor = Math.min(factor, fitFactor(windowRect.left + left, windowRect.left + marginX, centerX, -1));
+		factor = Math.min(factor, fitFactor(windowRect.left + right, windowRect.right - marginX, centerX, 1));
+		factor = Math.min(factor, fitFactor(windowRect.top + top, windowRect.top + marginY, centerY, -1));
+		factor = Math.min(factor, fitFactor(windowRect.top + bottom, windowRect.bottom - marginY, centerY, 1));
+		return factor;
+	}
+
+	/**
+	 * @param outward
+	 *                  -1表示左边或上边，1表示右边或下边
+	 * @return 坐标为position的边放大后不越过limit的最大倍数
+	 */
+	private static float fitFactor(float position, float limit, float center, int outward) {
+		float offset = (position - center) * outward;
+		if (offset <= 0) {
+			// This edge moves towards the center
+			return Float.MAX_VALUE;
+		}
+		float room = (limit - center) * outward;
+		return room <= 0 ? 0f : room / offset;
+	}
+
+	private void clearPatterns() {
+		patternCount = 0;
+		nextPattern = 0;
+	}
+
+	private float distance(int i, int j) {
+		float dx = patternX[i] - patternX[j];
+		float dy = patternY[i] - patternY[j];
+		return (float) Math.sqrt(dx * dx + dy * dy);
+	}
+
+	private void changeZoom(int target, long now) {
+		zoom = target;
+		settleUntil = now + SETTLE_MS;
+		lastActive = now;
+		// Earlier patterns were found at the old scale
+		clearPatterns();
+		callback.onZoomDecision(target);
+	}
+}
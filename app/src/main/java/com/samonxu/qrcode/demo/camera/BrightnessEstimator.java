@@ -0,0 +1,63 @@
+package com.samonxu.qrcode.demo.camera;
+
+/**
+ * 根据预览帧的Y分量估计环境亮度。每隔SAMPLE_STEP个像素取样一次，统计到预分配的直方图中，不分配内存。
+ * 同一时间只能在一个线程中使用。
+ */
+public class BrightnessEstimator {
+
+	private static final int SAMPLE_STEP = 8;
+	private static final int BIN_SHIFT = 3;
+	private static final int BIN_COUNT = 256 >> BIN_SHIFT;
+
+	private final int[] histogram = new int[BIN_COUNT];
+	private int sampleCount;
+	private float mean;
+
+	/**
+	 * @param yData
+	 *                  以Y分量开头的YUV数据
+	 * @return 平均亮度，0~255
+	 */
+	public float estimate(byte[] yData, int width, int height) {
+		int[] bins = histogram;
+		for (int i = 0; i < BIN_COUNT; i++) {
+			bins[i] = 0;
+		}
+		long sum = 0;
+		int count = 0;
+		for (int y = SAMPLE_STEP / 2; y < height; y += SAMPLE_STEP) {
+			int offset = y * width;
+			for (int x = SAMPLE_STEP / 2; x < width; x += SAMPLE_STEP) {
+				int luma = yData[offset + x] & 0xFF;
+				bins[luma >> BIN_SHIFT]++;
+				sum += luma;
+				count++;
+			}
+		}
+		sampleCount = count;
+		mean = count == 0 ? 0 : (float) sum / count;
+		return mean;
+	}
+
+	public float getMean() {
+		return mean;
+	}
+
+	/**
+	 * @param fraction
+	 *                  0~1
+	 * @return 上一帧亮度的分位数，取直方图区间的中值
+	 */
+	public int getPercentile(float fraction) {
+		int target = (int) (sampleCount * fraction);
+		int accumulated = 0;
+		for (int i = 0; i < BIN_COUNT; i++) {
+			accumulated += histogram[i];
+			if (accumulated > target) {
+				return (i << BIN_SHIFT) + (1 << (BIN_SHIFT - 1));
+			}
+		}
+		return 255;
+	}
+}
@@ -0,0 +1,118 @@
+package com.samonxu.qrcode.demo.camera;
+
+import android.hardware.Camera;
+
+import com.samonxu.qrcode.core.Size;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 打开相机时一次性读取的相机能力快照，之后查询能力不再调用getParameters()
+ */
+public class CameraCapabilities {
+
+	private final List<String> flashModes;
+	private final List<String> focusModes;
+	private final boolean isZoomSupported;
+	private final int maxZoom;
+	private final List<Integer> zoomRatios;
+	private final int minExposureCompensation;
+	private final int maxExposureCompensation;
+	private final float exposureCompensationStep;
+	private final List<Size> previewSizes;
+	private final List<int[]> previewFpsRanges;
+
+	public CameraCapabilities(Camera.Parameters parameters) {
+		flashModes = unmodifiable(parameters.getSupportedFlashModes());
+		focusModes = unmodifiable(parameters.getSupportedFocusModes());
+		isZoomSupported = parameters.isZoomSupported();
+		maxZoom = isZoomSupported ? parameters.getMaxZoom() : 0;
+		zoomRatios = isZoomSupported ? unmodifiable(parameters.getZoomRatios()) : Collections.<Integer> emptyList();
+		minExposureCompensation = parameters.getMinExposureCompensation();
+		maxExposureCompensation = parameters.getMaxExposureCompensation();
+		exposureCompensationStep = parameters.getExposureCompensationStep();
+		List<Size> sizes = new ArrayList<Size>();
+		List<Camera.Size> supportedSizes = parameters.getSupportedPreviewSizes();
+		if (supportedSizes != null) {
+			for (Camera.Size size : supportedSizes) {
+				sizes.add(new Size(size.width, size.height));
+			}
+		}
+		previewSizes = Collections.unmodifiableList(sizes);
+		previewFpsRanges = unmodifiable(parameters.getSupportedPreviewFpsRange());
+	}
+
+	private static <T> List<T> unmodifiable(List<T> list) {
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(new ArrayList<T>(list));
+	}
+
+	/**
+	 * 同时支持FLASH_MODE_TORCH和FLASH_MODE_OFF时才能作为手电筒使用
+	 */
+	public boolean isTorchSupported() {
+		return flashModes.contains(Camera.Parameters.FLASH_MODE_TORCH)
+				&& flashModes.contains(Camera.Parameters.FLASH_MODE_OFF);
+	}
+
+	public boolean isFocusModeSupported(String focusMode) {
+		return focusModes.contains(focusMode);
+	}
+
+	public boolean isExposureCompensationSupported() {
+		return minExposureCompensation != 0 || maxExposureCompensation != 0;
+	}
+
+	public List<String> getFlashModes() {
+		return flashModes;
+	}
+
+	public List<String> getFocusModes() {
+		return focusModes;
+	}
+
+	public boolean isZoomSupported() {
+		return isZoomSupported;
+	}
+
+	public int getMaxZoom() {
+		return maxZoom;
+	}
+
+	/**
+	 * @return 每个zoom等级对应的放大倍数乘以100
+	 */
+	public List<Integer> getZoomRatios() {
+		return zoomRatios;
+	}
+
+	public int getMinExposureCompensation() {
+		return minExposureCompensation;
+	}
+
+	public int getMaxExposureCompensation() {
+		return maxExposureCompensation;
+	}
+
+	public float getExposureCompensationStep() {
+		return exposureCompensationStep;
+	}
+
+	/**
+	 * @return 相机原始方向（未旋转）的预览大小
+	 */
+	public List<Size> getPreviewSizes() {
+		return previewSizes;
+	}
+
+	/**
+	 * @return 每个元素为{min, max}，单位为帧率乘以1000
+	 */
+	public List<int[]> getPreviewFpsRanges() {
+		return previewFpsRanges;
+	}
+}
@@ -6,41 +6,96 @@ import android.graphics.PixelFormat;
 import android.graphics.Rect;
 import android.hardware.Camera;
 import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+import android.util.Log;
 import android.view.Display;
 import android.view.SurfaceHolder;
 import android.view.WindowManager;
 
+import com.google.zxing.ResultPoint;
+import com.samonxu.qrcode.core.CropRect;
+import com.samonxu.qrcode.core.Size;
+import com.samonxu.qrcode.core.capture.CaptureWriter;
+import com.samonxu.qrcode.demo.util.StartupTrace;
+
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
+/**
+ * 相机的打开、参数设置、预览、自动对焦以及预览帧回调都在独立的相机线程中进行，不占用UI线程。
+ * 相机线程随CameraManager创建，调用{@link #quit()}后结束。
+ */
 public class CameraManager implements Camera.AutoFocusCallback, Camera.PreviewCallback {
 
 	private enum CameraState {
 		CLOSED, OPEN, PREVIEW;
 	}
 
-	private Camera mCamera;
+	private static final String TAG = "CameraManager";
+
+	private volatile Camera mCamera;
 	private Size screenSize;
-	private Size cameraSize;
-	private CameraState mState;
+	private volatile Size cameraSize;
+	private volatile CameraState mState;
 	private PreviewFrameShotListener mFrameShotListener;
+	private volatile CameraCapabilities mCapabilities;
+	// Only touched on the camera thread, so getParameters() is never needed after opening
+	private Camera.Parameters mParameters;
+	private final CameraParameterQueue mParameterQueue = new CameraParameterQueue();
+	private TorchStateListener mTorchStateListener;
+	private final LowLightController mLowLightController = new LowLightController(new LowLightController.Callback() {
+		@Override
+		public void onTorchDecision(final boolean on) {
+			setFlashMode(on ? Camera.Parameters.FLASH_MODE_TORCH : Camera.Parameters.FLASH_MODE_OFF);
+			mMainHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					if (mTorchStateListener != null) {
+						mTorchStateListener.onTorchStateChanged(on);
+					}
+				}
+			});
+		}
+
+		@Override
+		public void onExposureDecision(int exposureCompensation) {
+			if (mParameterQueue.setExposureCompensation(exposureCompensation)) {
+				mHandler.sendEmptyMessage(MESSAGE_APPLY_PARAMETERS);
+			}
+		}
+	});
+	private final AutoZoomController mAutoZoomController = new AutoZoomController(new AutoZoomController.Callback() {
+		@Override
+		public void onZoomDecision(int zoom) {
+			if (mParameterQueue.setZoom(zoom)) {
+				mHandler.sendEmptyMessage(MESSAGE_APPLY_PARAMETERS);
+			}
+		}
+	});
+	// Only touched on the camera thread, frames are recorded in onPreviewFrame()
+	private CaptureWriter mCaptureWriter;
+	private CropRect mRecordCropRect;
+	private final HandlerThread mCameraThread;
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
 
 	private static final int REQUEST_AUTO_FOCUS_INTERVAL_MS = 1500;
 	private static final int MESSAGE_REQUEST_AUTO_FOCUS = 0;
+	private static final int MESSAGE_APPLY_PARAMETERS = 1;
 
-	private Handler mHandler = new Handler() {
-		public void handleMessage(android.os.Message msg) {
-			switch (msg.what) {
-			case MESSAGE_REQUEST_AUTO_FOCUS:
-				if (mState == CameraState.PREVIEW && mCamera != null) {
-					mCamera.autoFocus(CameraManager.this);
-				}
-				break;
+	private final Handler mHandler;
 
-			default:
-				break;
+	private final Runnable requestPreviewFrameRunnable = new Runnable() {
+		@Override
+		public void run() {
+			if (mState == CameraState.PREVIEW && mCamera != null) {
+				mCamera.setOneShotPreviewCallback(CameraManager.this);
 			}
-		};
+		}
 	};
 
 	@SuppressWarnings("deprecation")
@@ -49,20 +104,141 @@ public class CameraManager implements Camera.AutoFocusCallback, Camera.PreviewCa
 		Display display = manager.getDefaultDisplay();
 		screenSize = new Size(display.getWidth(), display.getHeight());
 		mState = CameraState.CLOSED;
+		mCameraThread = new HandlerThread("CameraThread");
+		mCameraThread.start();
+		// Camera callbacks are delivered to the looper of the thread that opened the camera
+		mHandler = new Handler(mCameraThread.getLooper(), new Handler.Callback() {
+			@Override
+			public boolean handleMessage(Message msg) {
+				switch (msg.what) {
+				case MESSAGE_REQUEST_AUTO_FOCUS:
+					if (mState == CameraState.PREVIEW && mCamera != null) {
+						mCamera.autoFocus(CameraManager.this);
+					}
+					break;
+
+				case MESSAGE_APPLY_PARAMETERS:
+					applyParameters();
+					break;
+
+				default:
+					break;
+				}
+				return true;
+			}
+		});
 	}
 
-	public boolean initCamera(SurfaceHolder holder) {
-		mCamera = Camera.open();
-		if (mCamera == null) {
+	/**
+	 * 在相机线程打开相机并设置参数，可以在onCreate中尽早调用，与布局加载并行
+	 */
+	public void openCameraAsync() {
+		mHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				openCamera();
+			}
+		});
+	}
+
+	/**
+	 * 在相机线程设置预览Surface并开始预览，相机尚未打开时会先打开相机，结果在UI线程回调
+	 */
+	public void startPreviewAsync(final SurfaceHolder holder, final CameraStartListener listener) {
+		mHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				final boolean success = initCamera(holder);
+				if (success) {
+					startPreview();
+					StartupTrace.mark(StartupTrace.PREVIEW_STARTED);
+				}
+				mMainHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						listener.onCameraStarted(success);
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * 在相机线程停止预览并释放相机，等待完成后返回，保证Surface销毁前预览已经停止
+	 */
+	public void closeCamera() {
+		final CountDownLatch latch = new CountDownLatch(1);
+		boolean posted = mHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				stopPreview();
+				release();
+				latch.countDown();
+			}
+		});
+		if (!posted) {
+			return;
+		}
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * 在相机线程释放相机后结束相机线程，之后不能再调用异步方法。
+	 * 没有调用{@link #closeCamera()}时，例如Surface还没创建就退出，异步打开的相机也会被释放。
+	 */
+	public void quit() {
+		mHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				stopPreview();
+				release();
+				// Quit from this message, so the release always runs first; quitSafely() needs API 18
+				mCameraThread.quit();
+			}
+		});
+	}
+
+	private boolean openCamera() {
+		if (mCamera != null) {
+			return true;
+		}
+		Camera camera;
+		try {
+			camera = Camera.open();
+		} catch (RuntimeException e) {
+			Log.w(TAG, "Open camera failed", e);
 			return false;
 		}
-		mState = CameraState.OPEN;
-		mCamera.setDisplayOrientation(90);
-		Camera.Parameters parameters = mCamera.getParameters();
+		if (camera == null) {
+			return false;
+		}
+		camera.setDisplayOrientation(90);
+		Camera.Parameters parameters = camera.getParameters();
 		cameraSize = getBestPreviewSize(parameters, screenSize);
 		parameters.setPreviewSize(cameraSize.height, cameraSize.width);
 		parameters.setPreviewFormat(ImageFormat.NV21);//Default
-		mCamera.setParameters(parameters);
+		mCapabilities = new CameraCapabilities(parameters);
+		mLowLightController.setCapabilities(mCapabilities);
+		mAutoZoomController.setCapabilities(mCapabilities);
+		// The auto zoom controller now starts from no zoom, a zoom queued before this point is stale
+		mParameterQueue.clearZoom();
+		mParameterQueue.applyTo(parameters);
+		camera.setParameters(parameters);
+		mParameters = parameters;
+		mCamera = camera;
+		mState = CameraState.OPEN;
+		StartupTrace.mark(StartupTrace.CAMERA_OPENED);
+		return true;
+	}
+
+	public boolean initCamera(SurfaceHolder holder) {
+		if (!openCamera()) {
+			return false;
+		}
 		try {
 			mCamera.setPreviewDisplay(holder);
 		} catch (IOException e) {
@@ -75,38 +251,161 @@ public class CameraManager implements Camera.AutoFocusCallback, Camera.PreviewCa
 		return mCamera == null ? false : true;
 	}
 
+	/**
+	 * @return 打开相机时读取的能力快照，相机未打开时返回null
+	 */
+	public CameraCapabilities getCapabilities() {
+		return mCapabilities;
+	}
+
 	public boolean isFlashlightAvailable() {
-		if (mCamera == null) {
-			return false;
-		}
-		Camera.Parameters parameters = mCamera.getParameters();
-		List<String> flashModes = parameters.getSupportedFlashModes();
-		boolean isFlashOnAvailable = false;
-		boolean isFlashOffAvailable = false;
-		for (String flashMode : flashModes) {
-			if (Camera.Parameters.FLASH_MODE_TORCH.equals(flashMode)) {
-				isFlashOnAvailable = true;
-			}
-			if (Camera.Parameters.FLASH_MODE_OFF.equals(flashMode)) {
-				isFlashOffAvailable = true;
+		CameraCapabilities capabilities = mCapabilities;
+		return mCamera != null && capabilities != null && capabilities.isTorchSupported();
+	}
+
+	public void enableFlashlight() {
+		mLowLightController.setTorchOn(true);
+		setFlashMode(Camera.Parameters.FLASH_MODE_TORCH);
+	}
+
+	public void disableFlashlight() {
+		mLowLightController.setTorchOn(false);
+		setFlashMode(Camera.Parameters.FLASH_MODE_OFF);
+	}
+
+	/**
+	 * 是否根据预览亮度自动开关手电筒和调整曝光补偿，默认开启
+	 */
+	public void setAutoLightEnabled(boolean enabled) {
+		mLowLightController.setEnabled(enabled);
+	}
+
+	/**
+	 * @return 当前的亮度读数和弱光控制决策统计
+	 */
+	public LightMetrics getLightMetrics() {
+		return mLowLightController.getMetrics();
+	}
+
+	/**
+	 * 是否在码太小时自动放大变焦，默认开启，相机不支持变焦时不起作用
+	 */
+	public void setAutoZoomEnabled(boolean enabled) {
+		mAutoZoomController.setEnabled(enabled, SystemClock.uptimeMillis());
+	}
+
+	/**
+	 * 解码过程中找到的可能点，用于估计码的大小并自动变焦，可以在任意线程调用。
+	 * 坐标相对于{@link #getPreviewFrameRect(Rect)}返回的区域。
+	 */
+	public void onPossibleResultPoint(ResultPoint point) {
+		mAutoZoomController.onPossibleResultPoint(point, SystemClock.uptimeMillis());
+	}
+
+	/**
+	 * 解码成功后调用，自动变焦恢复到不变焦
+	 */
+	public void onDecodeSuccess() {
+		mAutoZoomController.onDecodeSuccess(SystemClock.uptimeMillis());
+	}
+
+	/**
+	 * @return 自动变焦当前的zoom等级
+	 */
+	public int getAutoZoom() {
+		return mAutoZoomController.getZoom();
+	}
+
+	/**
+	 * 在相机线程打开录制文件，之后回调给{@link PreviewFrameShotListener}的每一帧都会连同裁剪区域和时间戳写入文件。
+	 * 写入在单独的线程中进行，不会阻塞预览；关闭相机时自动结束录制。
+	 *
+	 * @param cropRect
+	 *                  解码时使用的预览图像区域
+	 */
+	public void startRecording(final File file, final CropRect cropRect) {
+		mHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				stopRecordingInternal();
+				File dir = file.getParentFile();
+				if (dir != null) {
+					dir.mkdirs();
+				}
+				try {
+					mCaptureWriter = new CaptureWriter(file);
+					mRecordCropRect = new CropRect(cropRect);
+					Log.d(TAG, "Recording frames to " + file);
+				} catch (IOException e) {
+					Log.w(TAG, "Open capture file failed", e);
+				}
 			}
-			if (isFlashOnAvailable && isFlashOffAvailable) {
-				return true;
+		});
+	}
+
+	/**
+	 * 在相机线程结束录制，剩余的帧、索引和关闭文件在写线程中完成，不会阻塞预览
+	 */
+	public void stopRecording() {
+		mHandler.post(new Runnable() {
+			@Override
+			public void run() {
+				stopRecordingInternal();
 			}
+		});
+	}
+
+	private void stopRecordingInternal() {
+		CaptureWriter writer = mCaptureWriter;
+		if (writer == null) {
+			return;
 		}
-		return false;
+		mCaptureWriter = null;
+		// Flushing the queued frames and forcing the file to disk would stall the preview and autofocus
+		writer.closeAsync(new CaptureWriter.CloseListener() {
+			@Override
+			public void onClosed(CaptureWriter writer, IOException error) {
+				if (error != null) {
+					Log.w(TAG, "Write capture file failed", error);
+				} else {
+					Log.d(TAG, "Recorded " + writer.getFrameCount() + " frames (" + writer.getDroppedFrames()
+							+ " dropped, " + writer.getBytesWritten() + " bytes) to " + writer.getFile());
+				}
+			}
+		});
 	}
 
-	public void enableFlashlight() {
-		Camera.Parameters parameters = mCamera.getParameters();
-		parameters.setFlashMode(Camera.Parameters.FLASH_MODE_TORCH);
-		mCamera.setParameters(parameters);
+	public void setTorchStateListener(TorchStateListener l) {
+		mTorchStateListener = l;
 	}
 
-	public void disableFlashlight() {
-		Camera.Parameters parameters = mCamera.getParameters();
-		parameters.setFlashMode(Camera.Parameters.FLASH_MODE_OFF);
-		mCamera.setParameters(parameters);
+	private void setFlashMode(String flashMode) {
+		if (mParameterQueue.setFlashMode(flashMode)) {
+			mHandler.sendEmptyMessage(MESSAGE_APPLY_PARAMETERS);
+		}
+	}
+
+	/**
+	 * 在相机线程中应用队列中的参数修改，连续多次修改只会调用一次setParameters()
+	 */
+	private void applyParameters() {
+		if (mCamera == null || mParameters == null) {
+			// Kept until the camera is opened again, see openCamera()
+			return;
+		}
+		if (mParameterQueue.applyTo(mParameters)) {
+			try {
+				mCamera.setParameters(mParameters);
+			} catch (RuntimeException e) {
+				Log.w(TAG, "Set parameters failed", e);
+				// Drop the rejected values, or every later setParameters() would send them again and fail too
+				try {
+					mParameters = mCamera.getParameters();
+				} catch (RuntimeException e1) {
+					Log.w(TAG, "Reload parameters failed", e1);
+				}
+			}
+		}
 	}
 
 	public void startPreview() {
@@ -119,27 +418,91 @@ public class CameraManager implements Camera.AutoFocusCallback, Camera.PreviewCa
 
 	public void stopPreview() {
 		if (mCamera != null) {
+			mHandler.removeMessages(MESSAGE_REQUEST_AUTO_FOCUS);
 			mCamera.stopPreview();
 			mState = CameraState.OPEN;
 		}
 	}
 
 	public void release() {
+		stopRecordingInternal();
 		if (mCamera != null) {
 			mCamera.setOneShotPreviewCallback(null);
 			mCamera.release();
+			mCamera = null;
+			mParameters = null;
 			mState = CameraState.CLOSED;
 		}
 	}
 
+	/**
+	 * 可以在任意线程调用，预览帧在相机线程回调给{@link PreviewFrameShotListener}
+	 */
 	public void requestPreviewFrameShot() {
-		mCamera.setOneShotPreviewCallback(CameraManager.this);
+		mHandler.post(requestPreviewFrameRunnable);
+	}
+
+	/**
+	 * 等待delayMs后再请求预览帧，可以在任意线程调用
+	 */
+	public void requestPreviewFrameShot(long delayMs) {
+		if (delayMs <= 0) {
+			requestPreviewFrameShot();
+		} else {
+			mHandler.postDelayed(requestPreviewFrameRunnable, delayMs);
+		}
+	}
+
+	/**
+	 * 从相机支持的帧率范围中选择最高帧率不超过maxFps的一个，降低帧率可以减少耗电和发热。
+	 * 其中优先最低帧率最低的，自动曝光在暗处可以延长曝光时间，而不是被[30,30]这样的固定帧率限制。
+	 * 没有满足条件的范围时使用最高帧率最低的一个，maxFps不大于0时不限制最高帧率。
+	 * 可以在任意线程调用，相机未打开时不起作用。
+	 */
+	public void setPreviewFpsLimit(int maxFps) {
+		CameraCapabilities capabilities = mCapabilities;
+		if (capabilities == null) {
+			return;
+		}
+		int limit = maxFps > 0 ? maxFps * 1000 : Integer.MAX_VALUE;
+		int[] best = null;
+		int[] lowest = null;
+		for (int[] range : capabilities.getPreviewFpsRanges()) {
+			if (lowest == null || range[1] < lowest[1]) {
+				lowest = range;
+			}
+			// Prefer the lowest minimum, so the low light controller can rely on longer exposures,
+			// then the highest maximum under the limit
+			if (range[1] <= limit && (best == null || range[0] < best[0]
+					|| (range[0] == best[0] && range[1] > best[1]))) {
+				best = range;
+			}
+		}
+		if (best == null) {
+			best = lowest;
+		}
+		if (best != null && mParameterQueue.setPreviewFpsRange(best[0], best[1])) {
+			mHandler.sendEmptyMessage(MESSAGE_APPLY_PARAMETERS);
+		}
 	}
 
 	@Override
 	public void onPreviewFrame(byte[] data, Camera camera) {
+		// Runs on the camera thread, so rotating the frame never blocks the UI looper
+		// The raw frame is still in sensor orientation here
+		long now = SystemClock.uptimeMillis();
+		mLowLightController.onFrame(data, cameraSize.height, cameraSize.width, now);
+		mAutoZoomController.onFrame(now);
 		if (mFrameShotListener != null) {
 			data = rotateYUVdata90(data);
+			if (mCaptureWriter != null) {
+				// The rotated copy is never modified afterwards, so it can be queued without copying
+				if (!mCaptureWriter.offer(data, cameraSize, mRecordCropRect, System.nanoTime())
+						&& mCaptureWriter.isFull()) {
+					Log.w(TAG, "Capture file reached its size limit, recording stopped");
+					stopRecordingInternal();
+				}
+			}
 			mFrameShotListener.onPreviewFrame(data, cameraSize);
 		}
 	}
@@ -173,16 +536,17 @@ public class CameraManager implements Camera.AutoFocusCallback, Camera.PreviewCa
 	/**
 	 * 因为预览图像和屏幕大小可能不一样，所以屏幕上的区域要根据比例转化为预览图像上对应的区域
 	 */
-	public Rect getPreviewFrameRect(Rect screenFrameRect) {
+	public CropRect getPreviewFrameRect(Rect screenFrameRect) {
 		if (mCamera == null) {
 			throw new IllegalStateException("Need call initCamera() before this.");
 		}
-		Rect previewRect = new Rect();
-		previewRect.left = screenFrameRect.left * cameraSize.width / screenSize.width;
-		previewRect.right = screenFrameRect.right * cameraSize.width / screenSize.width;
-		previewRect.top = screenFrameRect.top * cameraSize.height / screenSize.height;
-		previewRect.bottom = screenFrameRect.bottom * cameraSize.height / screenSize.height;
-		return previewRect;
+		CropRect rect = new CropRect(screenFrameRect.left * cameraSize.width / screenSize.width,
+				screenFrameRect.top * cameraSize.height / screenSize.height,
+				screenFrameRect.right * cameraSize.width / screenSize.width,
+				screenFrameRect.bottom * cameraSize.height / screenSize.height);
+		// Possible points are reported relative to this rect
+		mAutoZoomController.setWindow(rect, cameraSize);
+		return rect;
 	}
 
 	private byte[] rotateYUVdata90(byte[] srcData) {
@@ -0,0 +1,95 @@
+package com.samonxu.qrcode.demo.camera;
+
+import android.hardware.Camera;
+
+/**
+ * 待应用的相机参数修改。同一参数的多次修改只保留最后一次，
+ * 在相机线程中一次性写入Camera.Parameters，最后只调用一次setParameters()。
+ */
+class CameraParameterQueue {
+
+	private static final int UNSET = Integer.MIN_VALUE;
+
+	private String flashMode;
+	private int exposureCompensation = UNSET;
+	private int zoom = UNSET;
+	private int minPreviewFps = UNSET;
+	private int maxPreviewFps = UNSET;
+
+	/**
+	 * @return 队列在此之前是否为空，为空时需要安排一次应用
+	 */
+	public synchronized boolean setFlashMode(String flashMode) {
+		boolean wasEmpty = isEmpty();
+		this.flashMode = flashMode;
+		return wasEmpty;
+	}
+
+	public synchronized boolean setExposureCompensation(int exposureCompensation) {
+		boolean wasEmpty = isEmpty();
+		this.exposureCompensation = exposureCompensation;
+		return wasEmpty;
+	}
+
+	public synchronized boolean setZoom(int zoom) {
+		boolean wasEmpty = isEmpty();
+		this.zoom = zoom;
+		return wasEmpty;
+	}
+
+	/**
+	 * 丢弃还没应用的zoom修改
+	 */
+	public synchronized void clearZoom() {
+		zoom = UNSET;
+	}
+
+	/**
+	 * @param minFps
+	 *                  帧率乘以1000，与{@link Camera.Parameters#setPreviewFpsRange}相同
+	 */
+	public synchronized boolean setPreviewFpsRange(int minFps, int maxFps) {
+		boolean wasEmpty = isEmpty();
+		this.minPreviewFps = minFps;
+		this.maxPreviewFps = maxFps;
+		return wasEmpty;
+	}
+
+	private boolean isEmpty() {
+		return flashMode == null && exposureCompensation == UNSET && zoom == UNSET && maxPreviewFps == UNSET;
+	}
+
+	/**
+	 * 把队列中的修改写入parameters并清空队列
+	 * 
+	 * @return 参数是否发生了变化，未变化时不需要调用setParameters()
+	 */
+	public synchronized boolean applyTo(Camera.Parameters parameters) {
+		boolean changed = false;
+		if (flashMode != null && !flashMode.equals(parameters.getFlashMode())) {
+			parameters.setFlashMode(flashMode);
+			changed = true;
+		}
+		if (exposureCompensation != UNSET && exposureCompensation != parameters.getExposureCompensation()) {
+			parameters.setExposureCompensation(exposureCompensation);
+			changed = true;
+		}
+		if (zoom != UNSET && zoom != parameters.getZoom()) {
+			parameters.setZoom(zoom);
+			changed = true;
+		}
+		if (maxPreviewFps != UNSET) {
+			int[] range = new int[2];
+			parameters.getPreviewFpsRange(range);
+			if (range[0] != minPreviewFps || range[1] != maxPreviewFps) {
+				parameters.setPreviewFpsRange(minPreviewFps, maxPreviewFps);
+				changed = true;
+			}
+		}
+		flashMode = null;
+		exposureCompensation = UNSET;
+		zoom = UNSET;
+		minPreviewFps = maxPreviewFps = UNSET;
+		return changed;
+	}
+}
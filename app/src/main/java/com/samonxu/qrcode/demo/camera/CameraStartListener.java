@@ -0,0 +1,11 @@
+package com.samonxu.qrcode.demo.camera;
+
+public interface CameraStartListener {
+	/**
+	 * 在UI线程回调
+	 * 
+	 * @param success
+	 *                  相机是否成功打开并开始预览
+	 */
+	public void onCameraStarted(boolean success);
+}
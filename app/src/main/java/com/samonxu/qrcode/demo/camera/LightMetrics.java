@@ -0,0 +1,38 @@
+package com.samonxu.qrcode.demo.camera;
+
+/**
+ * 弱光控制的亮度读数和决策统计快照
+ */
+public class LightMetrics {
+	public final float brightness;
+	public final float medianBrightness;
+	public final float ambientBrightness;
+	public final boolean isTorchOn;
+	public final boolean isAutoEnabled;
+	public final int exposureCompensation;
+	public final int torchSwitchCount;
+	public final int exposureChangeCount;
+	public final long sampleCount;
+
+	public LightMetrics(float brightness, float medianBrightness, float ambientBrightness, boolean isTorchOn,
+			boolean isAutoEnabled, int exposureCompensation, int torchSwitchCount, int exposureChangeCount,
+			long sampleCount) {
+		this.brightness = brightness;
+		this.medianBrightness = medianBrightness;
+		this.ambientBrightness = ambientBrightness;
+		this.isTorchOn = isTorchOn;
+		this.isAutoEnabled = isAutoEnabled;
+		this.exposureCompensation = exposureCompensation;
+		this.torchSwitchCount = torchSwitchCount;
+		this.exposureChangeCount = exposureChangeCount;
+		this.sampleCount = sampleCount;
+	}
+
+	@Override
+	public String toString() {
+		return "brightness=" + brightness + ", median=" + medianBrightness + ", ambient=" + ambientBrightness
+				+ ", torch=" + isTorchOn + ", auto=" + isAutoEnabled + ", exposure=" + exposureCompensation
+				+ ", torchSwitches=" + torchSwitchCount + ", exposureChanges=" + exposureChangeCount + ", samples="
+				+ sampleCount;
+	}
+}
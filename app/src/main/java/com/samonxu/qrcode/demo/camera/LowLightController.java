@@ -0,0 +1,162 @@
+package com.samonxu.qrcode.demo.camera;
+
+import android.util.Log;
+
+/**
+ * 根据预览帧亮度自动开关手电筒并调整曝光补偿。
+ * <p>
+ * 亮度持续低于DARK_LUMA一段时间后打开手电筒；打开后记录手电筒带来的亮度增量，
+ * 扣除增量后的环境亮度持续高于TORCH_OFF_AMBIENT_LUMA时才关闭，避免在阈值附近来回切换。
+ * 没有手电筒或亮度仍然偏暗时逐级提高曝光补偿，过亮时逐级降低。
+ * </p>
+ * onFrame在相机线程中调用，其余方法可以在任意线程调用。
+ */
+class LowLightController {
+
+	interface Callback {
+		void onTorchDecision(boolean on);
+
+		void onExposureDecision(int exposureCompensation);
+	}
+
+	private static final String TAG = "LowLightController";
+
+	private static final float SMOOTHING = 0.3f;
+	private static final float DARK_LUMA = 40f;
+	private static final float TORCH_OFF_AMBIENT_LUMA = 90f;
+	private static final float DIM_LUMA = 70f;
+	private static final float BRIGHT_LUMA = 190f;
+	private static final long HOLD_MS = 800L;
+	private static final long SETTLE_MS = 300L;
+	private static final long EXPOSURE_STEP_INTERVAL_MS = 500L;
+
+	private final Callback callback;
+	private final BrightnessEstimator estimator = new BrightnessEstimator();
+
+	private boolean isEnabled = true;
+	private boolean isTorchSupported;
+	private int minExposure, maxExposure;
+
+	private boolean isTorchOn;
+	private int exposure;
+	private float smoothed = -1;
+	private float torchGain;
+	private float lumaBeforeTorch;
+	private boolean isMeasuringTorchGain;
+	private long darkSince = -1, brightSince = -1;
+	private long settleUntil;
+	private long lastExposureChange;
+
+	private int torchSwitchCount;
+	private int exposureChangeCount;
+	private long sampleCount;
+
+	LowLightController(Callback callback) {
+		this.callback = callback;
+	}
+
+	synchronized void setCapabilities(CameraCapabilities capabilities) {
+		isTorchSupported = capabilities.isTorchSupported();
+		minExposure = capabilities.getMinExposureCompensation();
+		maxExposure = capabilities.getMaxExposureCompensation();
+		isTorchOn = false;
+		exposure = 0;
+		smoothed = -1;
+		darkSince = brightSince = -1;
+	}
+
+	synchronized void setEnabled(boolean enabled) {
+		isEnabled = enabled;
+		darkSince = brightSince = -1;
+	}
+
+	/**
+	 * 手动开关手电筒时同步状态
+	 */
+	synchronized void setTorchOn(boolean on) {
+		isTorchOn = on;
+	}
+
+	synchronized void onFrame(byte[] yData, int width, int height, long now) {
+		float luma = estimator.estimate(yData, width, height);
+		sampleCount++;
+		if (now < settleUntil) {
+			// The sensor is still adapting to the last torch or exposure change
+			return;
+		}
+		if (isMeasuringTorchGain) {
+			isMeasuringTorchGain = false;
+			torchGain = Math.max(0, luma - lumaBeforeTorch);
+			smoothed = luma;
+		}
+		smoothed = smoothed < 0 ? luma : smoothed + SMOOTHING * (luma - smoothed);
+		if (!isEnabled) {
+			return;
+		}
+		updateTorch(now);
+		updateExposure(now);
+	}
+
+	private void updateTorch(long now) {
+		if (!isTorchSupported) {
+			return;
+		}
+		if (!isTorchOn) {
+			brightSince = -1;
+			if (smoothed >= DARK_LUMA) {
+				darkSince = -1;
+			} else if (darkSince < 0) {
+				darkSince = now;
+			} else if (now - darkSince >= HOLD_MS) {
+				lumaBeforeTorch = smoothed;
+				isMeasuringTorchGain = true;
+				switchTorch(true, now);
+			}
+		} else {
+			darkSince = -1;
+			float ambient = smoothed - torchGain;
+			if (ambient <= TORCH_OFF_AMBIENT_LUMA) {
+				brightSince = -1;
+			} else if (brightSince < 0) {
+				brightSince = now;
+			} else if (now - brightSince >= HOLD_MS) {
+				switchTorch(false, now);
+			}
+		}
+	}
+
+	private void switchTorch(boolean on, long now) {
+		isTorchOn = on;
+		torchSwitchCount++;
+		settleUntil = now + SETTLE_MS;
+		darkSince = brightSince = -1;
+		Log.d(TAG, "Torch " + (on ? "on" : "off") + ", brightness " + smoothed);
+		callback.onTorchDecision(on);
+	}
+
+	private void updateExposure(long now) {
+		if ((minExposure == 0 && maxExposure == 0) || now - lastExposureChange < EXPOSURE_STEP_INTERVAL_MS) {
+			return;
+		}
+		int target = exposure;
+		if (smoothed < DIM_LUMA && exposure < maxExposure) {
+			target = exposure + 1;
+		} else if (smoothed > BRIGHT_LUMA && exposure > minExposure) {
+			target = exposure - 1;
+		}
+		if (target != exposure) {
+			exposure = target;
+			exposureChangeCount++;
+			lastExposureChange = now;
+			settleUntil = now + SETTLE_MS;
+			Log.d(TAG, "Exposure compensation " + exposure + ", brightness " + smoothed);
+			callback.onExposureDecision(exposure);
+		}
+	}
+
+	synchronized LightMetrics getMetrics() {
+		float brightness = Math.max(0, smoothed);
+		return new LightMetrics(brightness, estimator.getPercentile(0.5f), isTorchOn ? brightness - torchGain
+				: brightness, isTorchOn, isEnabled, exposure, torchSwitchCount, exposureChangeCount, sampleCount);
+	}
+}
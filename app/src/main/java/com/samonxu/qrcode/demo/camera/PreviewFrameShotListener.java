@@ -1,5 +1,10 @@
 package com.samonxu.qrcode.demo.camera;
 
+import com.samonxu.qrcode.core.Size;
+
 public interface PreviewFrameShotListener {
+	/**
+	 * 在相机线程回调，data为旋转90度后的YUV数据
+	 */
 	public void onPreviewFrame(byte[] data, Size frameSize);
 }
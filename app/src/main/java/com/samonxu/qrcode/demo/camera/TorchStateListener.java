@@ -0,0 +1,8 @@
+package com.samonxu.qrcode.demo.camera;
+
+public interface TorchStateListener {
+	/**
+	 * 弱光控制自动开关手电筒后在UI线程回调
+	 */
+	public void onTorchStateChanged(boolean on);
+}
@@ -4,9 +4,10 @@ import android.graphics.Bitmap;
 
 import com.google.zxing.Result;
 import com.google.zxing.ResultPointCallback;
+import com.samonxu.qrcode.core.source.BaseLuminanceSource;
 
 public interface DecodeListener extends ResultPointCallback {
-	public void onDecodeSuccess(Result result, LuminanceSource source, Bitmap bitmap);
+	public void onDecodeSuccess(Result result, BaseLuminanceSource source, Bitmap bitmap);
 
-	public void onDecodeFailed(LuminanceSource source);
+	public void onDecodeFailed(BaseLuminanceSource source);
 }
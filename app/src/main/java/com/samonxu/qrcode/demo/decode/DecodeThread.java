@@ -4,55 +4,80 @@ import android.graphics.Bitmap;
 import android.os.AsyncTask;
 import android.util.Log;
 
-import com.google.zxing.BinaryBitmap;
-import com.google.zxing.DecodeHintType;
-import com.google.zxing.MultiFormatReader;
-import com.google.zxing.ReaderException;
 import com.google.zxing.Result;
-import com.google.zxing.common.HybridBinarizer;
+import com.samonxu.qrcode.core.decode.DecodeProfile;
+import com.samonxu.qrcode.core.decode.DecodeResult;
+import com.samonxu.qrcode.core.decode.EffortPolicy;
+import com.samonxu.qrcode.core.decode.FrameDecoder;
+import com.samonxu.qrcode.core.source.BaseLuminanceSource;
+import com.samonxu.qrcode.demo.util.BitmapUtil;
+import com.samonxu.qrcode.demo.util.StartupTrace;
 
-import java.util.Hashtable;
-
-public class DecodeThread extends AsyncTask<Void, Void, Result> {
-	private LuminanceSource luminanceSource;
+public class DecodeThread extends AsyncTask<Void, Void, Result[]> {
+	private static final String TAG = "DecodeThread";
+	private BaseLuminanceSource luminanceSource;
 	private DecodeListener listener;
+	private FrameDecoder frameDecoder;
 	private Bitmap mBitmap;
 	private boolean isStop = false;
 
-	public DecodeThread(LuminanceSource luminanceSource, DecodeListener listener) {
+	public DecodeThread(BaseLuminanceSource luminanceSource, DecodeListener listener) {
 		this.luminanceSource = luminanceSource;
 		this.listener = listener;
+		this.frameDecoder = new FrameDecoder(listener);
+		this.frameDecoder.setEffortPolicy(EffortPolicy.createForStillImage());
+	}
+
+	/**
+	 * 在后台线程加载解码相关的类并对空白图像空跑一次解码，减少第一帧的解码耗时。
+	 * 需要在UI线程调用，同时保证AsyncTask在UI线程完成初始化。
+	 */
+	public static void prewarm() {
+		AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				FrameDecoder.prewarm();
+				StartupTrace.mark(StartupTrace.DECODER_PREWARMED);
+			}
+		});
+	}
+
+	/**
+	 * 开启多码模式，需要listener实现{@link MultiDecodeListener}
+	 */
+	public void setMultiDecode(boolean multiDecode) {
+		frameDecoder.setMultiDecode(multiDecode);
+	}
+
+	/**
+	 * 设置识别的格式，传入null时识别全部格式
+	 */
+	public void setDecodeProfile(DecodeProfile profile) {
+		frameDecoder.setDecodeProfile(profile);
 	}
 
 	@Override
-	protected Result doInBackground(Void... params) {
-		BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(luminanceSource));
-		Hashtable<DecodeHintType, Object> hints = new Hashtable<DecodeHintType, Object>(3);
-		hints.put(DecodeHintType.CHARACTER_SET, "UTF-8");
-		hints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, listener);
-		MultiFormatReader multiFormatReader = new MultiFormatReader();
-		multiFormatReader.setHints(hints);
-		long start = System.currentTimeMillis();
-		Result rawResult = null;
-		try {
-			rawResult = multiFormatReader.decodeWithState(bitmap);
-			mBitmap = luminanceSource.renderCroppedGreyScaleBitmap();
-			long end = System.currentTimeMillis();
-			Log.d("DecodeThread", "Decode use " + (end - start) + "ms");
-		} catch (ReaderException re) {
-		} finally {
-			multiFormatReader.reset();
+	protected Result[] doInBackground(Void... params) {
+		// A picture from the album is the only frame, so every level is tried at once
+		DecodeResult result = frameDecoder.decodeAllLevels(luminanceSource);
+		if (result == null) {
+			return null;
 		}
-		return rawResult;
+		Log.d(TAG, "Decode album picture use " + result.getDecodeMillis() + "ms at level "
+				+ EffortPolicy.getLevelName(result.getEffortLevel()) + (result.isInverted() ? " inverted" : ""));
+		mBitmap = BitmapUtil.renderCroppedGreyScaleBitmap(luminanceSource);
+		return result.getResults();
 	}
 
 	@Override
-	protected void onPostExecute(Result result) {
+	protected void onPostExecute(Result[] results) {
 		if (listener != null && !isStop) {
-			if (result == null) {
+			if (results == null) {
 				listener.onDecodeFailed(luminanceSource);
+			} else if (frameDecoder.isMultiDecode() && listener instanceof MultiDecodeListener) {
+				((MultiDecodeListener) listener).onMultiDecodeSuccess(results, luminanceSource, mBitmap);
 			} else {
-				listener.onDecodeSuccess(result, luminanceSource, mBitmap);
+				listener.onDecodeSuccess(results[0], luminanceSource, mBitmap);
 			}
 		}
 	}
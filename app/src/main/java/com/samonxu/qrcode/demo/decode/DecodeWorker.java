@@ -0,0 +1,239 @@
+package com.samonxu.qrcode.demo.decode;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.util.Log;
+
+import com.google.zxing.Result;
+import com.google.zxing.ResultPointCallback;
+import com.samonxu.qrcode.core.CropRect;
+import com.samonxu.qrcode.core.Size;
+import com.samonxu.qrcode.core.decode.DecodeCallback;
+import com.samonxu.qrcode.core.decode.DecodeProfile;
+import com.samonxu.qrcode.core.decode.DecodeResult;
+import com.samonxu.qrcode.core.decode.DecodeScheduler;
+import com.samonxu.qrcode.core.decode.EffortPolicy;
+import com.samonxu.qrcode.core.decode.FullFrameScanner;
+import com.samonxu.qrcode.core.decode.ReaderStats;
+import com.samonxu.qrcode.core.source.BaseLuminanceSource;
+import com.samonxu.qrcode.core.source.PlanarYUVLuminanceSource;
+import com.samonxu.qrcode.demo.util.BitmapUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 把相机帧交给{@link DecodeScheduler}解码，并把结果转交给UI线程。
+ * <p>
+ * 解码失败在解码线程中直接回调{@link DecodeListener#onDecodeFailed}，不经过UI线程；
+ * 解码成功的结果先缓存起来，UI线程还没来得及处理时到达的结果会合并成一批，再在UI线程中回调。
+ * 多码模式下合并所有结果，单码模式下只回调第一个结果。
+ * </p>
+ * 扫描框外的后备扫描（{@link #decodeFullFrame}）找到的码也经过同样的合并后回调。
+ */
+public class DecodeWorker implements DecodeCallback<BaseLuminanceSource> {
+
+	private static final String TAG = "DecodeWorker";
+	private static final int MESSAGE_DELIVER = 1;
+	private static final long FULL_FRAME_INTERVAL_MS = 400L;
+
+	private final DecodeListener listener;
+	private final DecodeScheduler<BaseLuminanceSource> mScheduler;
+	private final FullFrameScanner mFullFrameScanner;
+	private final Handler mMainHandler;
+	private volatile boolean isStop = false;
+	private volatile boolean isMultiDecode = false;
+	private final AtomicInteger inFlightCount = new AtomicInteger();
+
+	private final List<Result> pendingResults = new ArrayList<Result>();
+	private BaseLuminanceSource pendingSource;
+	private Bitmap pendingBitmap;
+	private boolean isDeliveryPending = false;
+
+	public DecodeWorker(DecodeListener listener) {
+		this(listener, listener);
+	}
+
+	/**
+	 * @param pointCallback
+	 *                  相机帧解码时的可能点回调，在解码线程中调用
+	 */
+	public DecodeWorker(DecodeListener listener, ResultPointCallback pointCallback) {
+		this.listener = listener;
+		mScheduler = new DecodeScheduler<BaseLuminanceSource>(1, pointCallback, this);
+		// Camera frames keep failing on glare, low contrast and noise, so let them fall back to preprocessing
+		mScheduler.setPreprocessEnabled(true);
+		// Most frames only get a quick QR pass, so one hard frame cannot hold up the next ones
+		mScheduler.setEffortPolicy(new EffortPolicy());
+		mFullFrameScanner = new FullFrameScanner(FULL_FRAME_INTERVAL_MS, new FullFrameScanner.Callback() {
+			@Override
+			public void onCodeOutsideWindow(PlanarYUVLuminanceSource codeSource, DecodeResult result) {
+				if (isStop) {
+					return;
+				}
+				Log.d(TAG, "Full frame scan found " + result.getResults().length + " code(s) outside the scan window in "
+						+ result.getDecodeMillis() + "ms");
+				queueResults(codeSource, result);
+			}
+		});
+		mMainHandler = new Handler(Looper.getMainLooper(), new Handler.Callback() {
+			@Override
+			public boolean handleMessage(Message msg) {
+				if (msg.what == MESSAGE_DELIVER) {
+					deliverResults();
+				}
+				return true;
+			}
+		});
+	}
+
+	/**
+	 * 开启多码模式，需要listener实现{@link MultiDecodeListener}
+	 */
+	public void setMultiDecode(boolean multiDecode) {
+		isMultiDecode = multiDecode;
+		mScheduler.setMultiDecode(multiDecode);
+		mFullFrameScanner.setMultiDecode(multiDecode);
+	}
+
+	/**
+	 * 设置识别的格式，传入null时识别全部格式
+	 */
+	public void setDecodeProfile(DecodeProfile profile) {
+		mScheduler.setDecodeProfile(profile);
+		mFullFrameScanner.setDecodeProfile(profile);
+	}
+
+	/**
+	 * 设置扫描框解码的reader统计，默认每个DecodeWorker各有一个
+	 */
+	public void setReaderStats(ReaderStats stats) {
+		mScheduler.setReaderStats(stats);
+	}
+
+	/**
+	 * @return 扫描框解码的reader统计，不包括后备扫描
+	 */
+	public ReaderStats getReaderStats() {
+		return mScheduler.getReaderStats();
+	}
+
+	/**
+	 * 设置同时解码的线程数，默认为1，多于1个时帧按提交顺序开始解码，但结果不一定按顺序回调
+	 */
+	public void setWorkerCount(int workerCount) {
+		mScheduler.setWorkerCount(workerCount);
+	}
+
+	/**
+	 * 可以在任意线程调用，帧按提交顺序依次解码
+	 *
+	 * @return 是否接受了这一帧，已经{@link #quit()}时返回false，不会回调
+	 */
+	public boolean decode(BaseLuminanceSource source) {
+		if (isStop) {
+			return false;
+		}
+		inFlightCount.incrementAndGet();
+		if (!mScheduler.submit(source)) {
+			inFlightCount.decrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * 把整帧缩小后在最低优先级的线程中解码，找出扫描框外的码。只利用空闲时间：还有{@link #decode}的帧没解完、
+	 * 上一次还没结束或距离上次太近时直接丢弃。可以在任意线程调用，之后不能再修改data。
+	 *
+	 * @param window
+	 *                  扫描框对应的图像区域
+	 * @return 是否接受了这一帧
+	 */
+	public boolean decodeFullFrame(byte[] data, Size dataSize, CropRect window, long now) {
+		// Low thread priority alone does not keep the scan out of the way on one or two cores
+		return !isStop && inFlightCount.get() == 0 && mFullFrameScanner.offer(data, dataSize, window, now);
+	}
+
+	/**
+	 * @return 已提交但还没有解码结束的帧数
+	 */
+	public int getInFlightCount() {
+		return inFlightCount.get();
+	}
+
+	/**
+	 * 停止解码线程，丢弃尚未回调的结果
+	 */
+	public void quit() {
+		isStop = true;
+		mScheduler.shutdown();
+		mFullFrameScanner.shutdown();
+		mMainHandler.removeMessages(MESSAGE_DELIVER);
+	}
+
+	@Override
+	public void onDecodeFailed(BaseLuminanceSource source) {
+		// Before the callback, which may submit the next frame
+		inFlightCount.decrementAndGet();
+		if (!isStop) {
+			listener.onDecodeFailed(source);
+		}
+	}
+
+	@Override
+	public void onDecodeSuccess(BaseLuminanceSource source, DecodeResult result) {
+		inFlightCount.decrementAndGet();
+		if (isStop) {
+			return;
+		}
+		Log.d(TAG, "Decode " + result.getResults().length + " code(s) use " + result.getDecodeMillis() + "ms at level "
+				+ EffortPolicy.getLevelName(result.getEffortLevel()) + (result.isInverted() ? " inverted" : "")
+				+ (result.isPreprocessed() ? " after preprocessing" : ""));
+		queueResults(source, result);
+	}
+
+	private void queueResults(BaseLuminanceSource source, DecodeResult result) {
+		Bitmap bitmap = BitmapUtil.renderCroppedGreyScaleBitmap(source);
+		synchronized (pendingResults) {
+			Collections.addAll(pendingResults, result.getResults());
+			if (pendingSource == null) {
+				pendingSource = source;
+				pendingBitmap = bitmap;
+			} else {
+				bitmap.recycle();
+			}
+			if (!isDeliveryPending) {
+				isDeliveryPending = true;
+				mMainHandler.sendEmptyMessage(MESSAGE_DELIVER);
+			}
+		}
+	}
+
+	private void deliverResults() {
+		Result[] results;
+		BaseLuminanceSource source;
+		Bitmap bitmap;
+		synchronized (pendingResults) {
+			results = pendingResults.toArray(new Result[pendingResults.size()]);
+			source = pendingSource;
+			bitmap = pendingBitmap;
+			pendingResults.clear();
+			pendingSource = null;
+			pendingBitmap = null;
+			isDeliveryPending = false;
+		}
+		if (isStop || results.length == 0) {
+			return;
+		}
+		if (isMultiDecode && listener instanceof MultiDecodeListener) {
+			((MultiDecodeListener) listener).onMultiDecodeSuccess(results, source, bitmap);
+		} else {
+			listener.onDecodeSuccess(results[0], source, bitmap);
+		}
+	}
+}
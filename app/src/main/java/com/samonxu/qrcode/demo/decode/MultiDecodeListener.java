@@ -0,0 +1,13 @@
+package com.samonxu.qrcode.demo.decode;
+
+import android.graphics.Bitmap;
+
+import com.google.zxing.Result;
+import com.samonxu.qrcode.core.source.BaseLuminanceSource;
+
+public interface MultiDecodeListener extends DecodeListener {
+	/**
+	 * 多码模式下一帧内识别出的所有码，每个结果都带有各自的定位点
+	 */
+	public void onMultiDecodeSuccess(Result[] results, BaseLuminanceSource source, Bitmap bitmap);
+}
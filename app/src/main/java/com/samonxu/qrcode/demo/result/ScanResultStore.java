@@ -0,0 +1,193 @@
+package com.samonxu.qrcode.demo.result;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的扫描结果缩略图存储。Intent中只传递token，避免Bitmap经过Binder序列化。
+ * 内存中的缩略图总大小受限，超出时按LRU淘汰，开启溢出后被淘汰的缩略图会在后台线程压缩保存到缓存目录。
+ */
+public class ScanResultStore {
+
+	private static final String TAG = "ScanResultStore";
+	private static final String SPILL_DIR = "scan_results";
+	private static final int MAX_MEMORY_BYTES = 2 * 1024 * 1024;
+	private static final int MAX_SPILL_FILES = 32;
+	private static final int SPILL_QUALITY = 90;
+	public static final long NO_TOKEN = -1L;
+
+	private static ScanResultStore sInstance;
+
+	private final File spillDir;
+	private final AtomicLong nextToken;
+	private final LruCache<Long, Bitmap> thumbnails;
+	// Evicted thumbnails still being written, so they can be read back until the file exists
+	private final ConcurrentHashMap<Long, Bitmap> pendingSpills = new ConcurrentHashMap<Long, Bitmap>();
+	// Spills and deletes run in order on one thread, so a delete never races the spill of the same token
+	private final ExecutorService spillExecutor;
+	private volatile boolean isSpillEnabled = true;
+
+	public static synchronized ScanResultStore getInstance(Context context) {
+		if (sInstance == null) {
+			sInstance = new ScanResultStore(context.getApplicationContext());
+		}
+		return sInstance;
+	}
+
+	private ScanResultStore(Context context) {
+		spillDir = new File(context.getCacheDir(), SPILL_DIR);
+		// Seed with the clock so that tokens of a previous process never match new spill files
+		nextToken = new AtomicLong(System.currentTimeMillis());
+		thumbnails = new LruCache<Long, Bitmap>(MAX_MEMORY_BYTES) {
+			@Override
+			protected int sizeOf(Long key, Bitmap value) {
+				return value.getRowBytes() * value.getHeight();
+			}
+
+			@Override
+			protected void entryRemoved(boolean evicted, Long key, Bitmap oldValue, Bitmap newValue) {
+				// Called on the thread that put the new thumbnail, usually the UI thread, so the disk IO is deferred
+				if (evicted && isSpillEnabled) {
+					scheduleSpill(key, oldValue);
+				}
+			}
+		};
+		spillExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "ScanResultSpill");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * 是否把内存中淘汰的缩略图保存到缓存目录，默认开启
+	 */
+	public void setSpillEnabled(boolean spillEnabled) {
+		isSpillEnabled = spillEnabled;
+	}
+
+	/**
+	 * @return 用于取回缩略图的token
+	 */
+	public long putThumbnail(Bitmap thumbnail) {
+		long token = nextToken.incrementAndGet();
+		if (thumbnail != null) {
+			thumbnails.put(token, thumbnail);
+		}
+		return token;
+	}
+
+	/**
+	 * @return 对应的缩略图，已被丢弃或不存在时返回null
+	 */
+	public Bitmap getThumbnail(long token) {
+		if (token == NO_TOKEN) {
+			return null;
+		}
+		Bitmap bitmap = thumbnails.get(token);
+		if (bitmap == null) {
+			bitmap = pendingSpills.get(token);
+		}
+		if (bitmap != null) {
+			return bitmap;
+		}
+		File file = spillFile(token);
+		if (file.exists()) {
+			return BitmapFactory.decodeFile(file.getAbsolutePath());
+		}
+		return null;
+	}
+
+	/**
+	 * 取走后释放缩略图占用的内存和缓存文件
+	 */
+	public void remove(long token) {
+		if (token == NO_TOKEN) {
+			return;
+		}
+		thumbnails.remove(token);
+		pendingSpills.remove(token);
+		final File file = spillFile(token);
+		spillExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (file.exists() && !file.delete()) {
+					Log.w(TAG, "Delete " + file + " failed");
+				}
+			}
+		});
+	}
+
+	private void scheduleSpill(final long token, final Bitmap bitmap) {
+		pendingSpills.put(token, bitmap);
+		spillExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				// Skipped when the thumbnail was removed before its turn came
+				if (pendingSpills.get(token) == bitmap) {
+					spill(token, bitmap);
+					pendingSpills.remove(token, bitmap);
+				}
+			}
+		});
+	}
+
+	private File spillFile(long token) {
+		return new File(spillDir, token + ".jpg");
+	}
+
+	private void spill(long token, Bitmap bitmap) {
+		if (bitmap.isRecycled() || (!spillDir.exists() && !spillDir.mkdirs())) {
+			return;
+		}
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(spillFile(token));
+			bitmap.compress(Bitmap.CompressFormat.JPEG, SPILL_QUALITY, out);
+		} catch (IOException e) {
+			Log.w(TAG, "Spill thumbnail failed", e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+		trimSpillFiles();
+	}
+
+	private void trimSpillFiles() {
+		File[] files = spillDir.listFiles();
+		if (files == null || files.length <= MAX_SPILL_FILES) {
+			return;
+		}
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File lhs, File rhs) {
+				long diff = lhs.lastModified() - rhs.lastModified();
+				return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+			}
+		});
+		for (int i = 0; i < files.length - MAX_SPILL_FILES; i++) {
+			files[i].delete();
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package com.samonxu.qrcode.demo.util;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.SystemClock;
+
+import com.samonxu.qrcode.core.decode.ScanGovernor;
+
+/**
+ * 把电量、充电状态和电池温度转交给{@link ScanGovernor}。
+ * 设备温度要到API 29才能通过PowerManager读取，这里用电池温度近似设备的发热情况。
+ */
+public class BatteryStateReceiver extends BroadcastReceiver {
+
+	private final ScanGovernor governor;
+	private boolean isRegistered = false;
+
+	public BatteryStateReceiver(ScanGovernor governor) {
+		this.governor = governor;
+	}
+
+	/**
+	 * ACTION_BATTERY_CHANGED是粘性广播，注册后马上会收到当前状态
+	 */
+	public void register(Context context) {
+		if (isRegistered) {
+			return;
+		}
+		isRegistered = true;
+		context.registerReceiver(this, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+	}
+
+	public void unregister(Context context) {
+		if (isRegistered) {
+			isRegistered = false;
+			context.unregisterReceiver(this);
+		}
+	}
+
+	@Override
+	public void onReceive(Context context, Intent intent) {
+		int level = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+		int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+		int plugged = intent.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0);
+		// Tenths of a degree Celsius
+		int temperature = intent.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, Integer.MIN_VALUE);
+		int percent = level >= 0 && scale > 0 ? level * 100 / scale : 100;
+		governor.setBatteryState(percent, plugged != 0, temperature == Integer.MIN_VALUE ? Float.NaN
+				: temperature / 10f, SystemClock.uptimeMillis());
+	}
+}
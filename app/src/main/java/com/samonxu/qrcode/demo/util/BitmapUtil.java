@@ -0,0 +1,19 @@
+package com.samonxu.qrcode.demo.util;
+
+import android.graphics.Bitmap;
+
+import com.samonxu.qrcode.core.source.BaseLuminanceSource;
+
+public class BitmapUtil {
+	/**
+	 * 根据扫描结果，生成一个灰度图像
+	 */
+	public static Bitmap renderCroppedGreyScaleBitmap(BaseLuminanceSource source) {
+		int width = source.getWidth();
+		int height = source.getHeight();
+		int[] pixels = source.renderCroppedGreyScalePixels();
+		Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+		bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+		return bitmap;
+	}
+}
@@ -0,0 +1,49 @@
+package com.samonxu.qrcode.demo.util;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 记录从启动扫码界面到第一次解码成功之间各阶段的耗时，每个事件只记录第一次
+ */
+public class StartupTrace {
+
+	private static final String TAG = "StartupTrace";
+
+	public static final String CAMERA_OPENED = "camera_opened";
+	public static final String DECODER_PREWARMED = "decoder_prewarmed";
+	public static final String LAYOUT_INFLATED = "layout_inflated";
+	public static final String PREVIEW_STARTED = "preview_started";
+	public static final String FIRST_FRAME = "first_frame";
+	public static final String FIRST_DECODE = "first_decode";
+
+	private static long sStartTime = -1;
+	private static final Map<String, Long> sMarks = new LinkedHashMap<String, Long>();
+
+	/**
+	 * 在Activity.onCreate的最开始调用，重置所有记录
+	 */
+	public static synchronized void begin() {
+		sStartTime = SystemClock.elapsedRealtime();
+		sMarks.clear();
+	}
+
+	public static synchronized void mark(String event) {
+		if (sStartTime < 0 || sMarks.containsKey(event)) {
+			return;
+		}
+		long elapsed = SystemClock.elapsedRealtime() - sStartTime;
+		sMarks.put(event, elapsed);
+		Log.d(TAG, event + " +" + elapsed + "ms");
+	}
+
+	/**
+	 * @return 事件到启动时刻的毫秒数，按发生顺序排列
+	 */
+	public static synchronized Map<String, Long> getMarks() {
+		return new LinkedHashMap<String, Long>(sMarks);
+	}
+}
@@ -6,31 +6,40 @@ import android.graphics.Paint;
 import android.graphics.Paint.Style;
 import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.View;
 
 import com.google.zxing.ResultPoint;
 import com.samonxu.qrcode.demo.R;
 
-import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * 扫描框视图，只在扫描动画运行或者有存活的可能点时才重绘，重绘节奏由Choreographer控制
+ */
 public class CaptureView extends View {
 
-    private class PossiblePoint {
-        public float x, y;
-        public long foundTime;
-    }
-
     private static final int MASK_COLOR = 0x80000000;
     private static final int POSSIBLE_POINT_COLOR = 0xC0FFFF00;
 
     private static final int POSSIBLE_POINT_ALIVE_MS = 200;
+    private static final int POSSIBLE_POINT_CAPACITY = 16;
     private static final int SCANNER_DURATION = 2000;
+    private static final long FALLBACK_FRAME_DELAY_MS = 16L;
     private long startTime = -1;
 
     private Rect frame;
     private Paint paint;
-    private LinkedList<PossiblePoint> possiblePoints;
+    private PointRingBuffer possiblePoints;
+    private final float[] pointBuffer = new float[2];
+    private boolean isScanning = true;
+    private final AtomicBoolean isFrameScheduled = new AtomicBoolean(false);
+    private Choreographer choreographer;
+    private Choreographer.FrameCallback frameCallback;
+    private Runnable frameRunnable;
     private Drawable frameDrawable, scannerDrawable;
     private int scannerHeight = 0;
 
@@ -53,9 +62,74 @@ public class CaptureView extends View {
         frame = new Rect();
         paint = new Paint();
         paint.setAntiAlias(true);
-        possiblePoints = new LinkedList<PossiblePoint>();
+        possiblePoints = new PointRingBuffer(POSSIBLE_POINT_CAPACITY);
         frameDrawable = getResources().getDrawable(R.mipmap.qrcode_scan_frame);
         scannerDrawable = getResources().getDrawable(R.mipmap.qrcode_scan_scaner);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            choreographer = Choreographer.getInstance();
+            frameCallback = new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    isFrameScheduled.set(false);
+                    invalidate();
+                }
+            };
+        } else {
+            frameRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    isFrameScheduled.set(false);
+                    invalidate();
+                }
+            };
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        scheduleFrame();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (choreographer != null) {
+            choreographer.removeFrameCallback(frameCallback);
+        } else {
+            removeCallbacks(frameRunnable);
+        }
+        isFrameScheduled.set(false);
+    }
+
+    /**
+     * 开始扫描线动画
+     */
+    public void startScanAnimation() {
+        isScanning = true;
+        startTime = -1;
+        scheduleFrame();
+    }
+
+    /**
+     * 停止扫描线动画，此后只在有可能点时重绘
+     */
+    public void stopScanAnimation() {
+        isScanning = false;
+        scheduleFrame();
+    }
+
+    /**
+     * 请求在下一个显示帧重绘，可以在任意线程调用，同一帧内的多次请求只会触发一次重绘
+     */
+    private void scheduleFrame() {
+        if (isFrameScheduled.compareAndSet(false, true)) {
+            if (choreographer != null) {
+                choreographer.postFrameCallback(frameCallback);
+            } else {
+                postDelayed(frameRunnable, FALLBACK_FRAME_DELAY_MS);
+            }
+        }
     }
 
     @Override
@@ -92,46 +166,46 @@ public class CaptureView extends View {
         // Draw possible points
         paint.setColor(POSSIBLE_POINT_COLOR);
         paint.setStyle(Style.FILL);
-        long current = System.currentTimeMillis();
-        while (possiblePoints.size() > 0 && current - possiblePoints.peek().foundTime >= POSSIBLE_POINT_ALIVE_MS) {
-            possiblePoints.poll();
-        }
-        for (int i = 0; i < possiblePoints.size(); i++) {
-            PossiblePoint point = possiblePoints.get(i);
-            int radius = (int) (5 * (POSSIBLE_POINT_ALIVE_MS - current + point.foundTime) / POSSIBLE_POINT_ALIVE_MS);
+        long now = SystemClock.uptimeMillis();
+        for (int i = 0; i < possiblePoints.capacity(); i++) {
+            long foundTime = possiblePoints.read(i, pointBuffer);
+            if (foundTime == 0) {
+                continue;
+            }
+            int radius = (int) (5 * (POSSIBLE_POINT_ALIVE_MS - now + foundTime) / POSSIBLE_POINT_ALIVE_MS);
             if (radius > 0) {
-                canvas.drawCircle(frame.left + point.x, frame.top + point.y, radius, paint);
+                canvas.drawCircle(frame.left + pointBuffer[0], frame.top + pointBuffer[1], radius, paint);
             }
         }
 
         // Draw scanner
-        long now = System.currentTimeMillis();
-        if (startTime < 0) {
-            startTime = now;
-        }
-        int timePast = (int) ((now - startTime) % SCANNER_DURATION);
-        if (timePast >= 0 && timePast <= SCANNER_DURATION / 2) {
-            int scannerShift = frame.height() * 2 * timePast / SCANNER_DURATION;
-            canvas.save();
-            canvas.clipRect(frame);
-            scannerDrawable.setBounds(frame.left, frame.top + scannerShift, frame.right, frame.top + scannerHeight + scannerShift);
-            scannerDrawable.draw(canvas);
-            canvas.restore();
+        if (isScanning) {
+            if (startTime < 0) {
+                startTime = now;
+            }
+            int timePast = (int) ((now - startTime) % SCANNER_DURATION);
+            if (timePast >= 0 && timePast <= SCANNER_DURATION / 2) {
+                int scannerShift = frame.height() * 2 * timePast / SCANNER_DURATION;
+                canvas.save();
+                canvas.clipRect(frame);
+                scannerDrawable.setBounds(frame.left, frame.top + scannerShift, frame.right, frame.top + scannerHeight + scannerShift);
+                scannerDrawable.draw(canvas);
+                canvas.restore();
+            }
         }
         // Draw frame
         frameDrawable.draw(canvas);
 
-        invalidate();
+        if (isScanning || possiblePoints.hasPointsSince(now - POSSIBLE_POINT_ALIVE_MS)) {
+            scheduleFrame();
+        }
     }
 
+    /**
+     * 可以在解码线程中直接调用
+     */
     public void addPossibleResultPoint(ResultPoint point) {
-        PossiblePoint pp = new PossiblePoint();
-        pp.foundTime = System.currentTimeMillis();
-        pp.x = point.getX();
-        pp.y = point.getY();
-        if (possiblePoints.size() >= 10) {
-            possiblePoints.poll();
-        }
-        possiblePoints.add(pp);
+        possiblePoints.write(point.getX(), point.getY(), SystemClock.uptimeMillis());
+        scheduleFrame();
     }
 }
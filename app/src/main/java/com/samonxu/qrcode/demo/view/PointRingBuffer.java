@@ -0,0 +1,72 @@
+package com.samonxu.qrcode.demo.view;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 预分配的无锁环形缓冲区，可以在多个解码线程中写入，在UI线程中读取，写入和读取都不会分配内存。
+ * 每个槽位保存一个坐标和写入时间，时间为0表示该槽位正在写入或为空。
+ */
+public class PointRingBuffer {
+
+	private final int mask;
+	private final AtomicInteger writeIndex = new AtomicInteger();
+	private final AtomicLongArray positions;
+	private final AtomicLongArray stamps;
+
+	/**
+	 * @param capacity
+	 *                  容量，会向上取整为2的幂
+	 */
+	public PointRingBuffer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		mask = size - 1;
+		positions = new AtomicLongArray(size);
+		stamps = new AtomicLongArray(size);
+	}
+
+	public int capacity() {
+		return mask + 1;
+	}
+
+	public void write(float x, float y, long time) {
+		int slot = writeIndex.getAndIncrement() & mask;
+		// Invalidate the slot first so that a concurrent reader never pairs the new position with an old stamp
+		stamps.set(slot, 0);
+		positions.set(slot, ((long) Float.floatToRawIntBits(x) << 32) | (Float.floatToRawIntBits(y) & 0xFFFFFFFFL));
+		stamps.set(slot, time);
+	}
+
+	/**
+	 * 读取指定槽位
+	 * 
+	 * @param out
+	 *                  长度至少为2，用于接收x和y
+	 * @return 写入时间，槽位为空或正在被写入时返回0
+	 */
+	public long read(int slot, float[] out) {
+		long stamp = stamps.get(slot);
+		if (stamp == 0) {
+			return 0;
+		}
+		long position = positions.get(slot);
+		if (stamps.get(slot) != stamp) {
+			return 0;
+		}
+		out[0] = Float.intBitsToFloat((int) (position >>> 32));
+		out[1] = Float.intBitsToFloat((int) position);
+		return stamp;
+	}
+
+	/**
+	 * @return 是否存在写入时间晚于since的点
+	 */
+	public boolean hasPointsSince(long since) {
+		for (int i = 0; i <= mask; i++) {
+			if (stamps.get(i) > since) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
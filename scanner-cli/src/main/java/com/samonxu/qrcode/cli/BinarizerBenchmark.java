@@ -0,0 +1,198 @@
+package com.samonxu.qrcode.cli;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.samonxu.qrcode.core.CropRect;
+import com.samonxu.qrcode.core.Size;
+import com.samonxu.qrcode.core.decode.ReusableBinarizer;
+import com.samonxu.qrcode.core.source.PlanarYUVLuminanceSource;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * 比较{@link ReusableBinarizer}与{@link HybridBinarizer}：先检查各种尺寸和内容的图像二值化结果逐位一致，
+ * 再统计连续二值化相同尺寸的帧时每帧分配的字节数和耗时。
+ * <p>
+ * 用法：BinarizerBenchmark [frames]
+ * </p>
+ * 需要HotSpot的com.sun.management.ThreadMXBean统计分配量。结果不一致或复用版本每帧仍有分配时以非0状态退出。
+ */
+public class BinarizerBenchmark {
+
+	// Rotated 1280x720 preview with a 600x600 scan window, like CaptureActivity
+	private static final Size FRAME_SIZE = new Size(720, 1280);
+	private static final CropRect CROP_RECT = new CropRect(60, 340, 660, 940);
+	private static final int DISTINCT_FRAMES = 16;
+	private static final int WARMUP_FRAMES = 500;
+
+	public static void main(String[] args) throws Exception {
+		int frames = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		Random random = new Random(42);
+
+		boolean identical = checkIdentical(random);
+		System.out.println("Bit-identical to HybridBinarizer: " + (identical ? "yes" : "NO"));
+
+		PlanarYUVLuminanceSource[] sources = new PlanarYUVLuminanceSource[DISTINCT_FRAMES];
+		for (int i = 0; i < sources.length; i++) {
+			sources[i] = createFrame(random, FRAME_SIZE, CROP_RECT, i % 4);
+		}
+		ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if (!(threadBean instanceof com.sun.management.ThreadMXBean)
+				|| !((com.sun.management.ThreadMXBean) threadBean).isThreadAllocatedMemorySupported()) {
+			System.out.println("Allocation counting is not supported by this JVM");
+			System.exit(identical ? 0 : 1);
+		}
+		com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+		allocationBean.setThreadAllocatedMemoryEnabled(true);
+		long threadId = Thread.currentThread().getId();
+
+		ReusableBinarizer binarizer = new ReusableBinarizer(CROP_RECT.width(), CROP_RECT.height());
+		runHybrid(sources, WARMUP_FRAMES);
+		runReusable(binarizer, sources, WARMUP_FRAMES);
+
+		long bytes = allocationBean.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+		runHybrid(sources, frames);
+		long hybridNanos = System.nanoTime() - start;
+		long hybridBytes = allocationBean.getThreadAllocatedBytes(threadId) - bytes;
+
+		bytes = allocationBean.getThreadAllocatedBytes(threadId);
+		start = System.nanoTime();
+		runReusable(binarizer, sources, frames);
+		long reusableNanos = System.nanoTime() - start;
+		long reusableBytes = allocationBean.getThreadAllocatedBytes(threadId) - bytes;
+
+		System.out.println(String.format(Locale.US, "%d frames of %dx%d", frames, CROP_RECT.width(),
+				CROP_RECT.height()));
+		System.out.println(String.format(Locale.US, "HybridBinarizer:   %8d bytes/frame %8.1f us/frame",
+				hybridBytes / frames, hybridNanos / 1000.0 / frames));
+		System.out.println(String.format(Locale.US, "ReusableBinarizer: %8d bytes/frame %8.1f us/frame",
+				reusableBytes / frames, reusableNanos / 1000.0 / frames));
+		System.exit(identical && reusableBytes / frames == 0 ? 0 : 1);
+	}
+
+	private static void runHybrid(LuminanceSource[] sources, int frames) throws NotFoundException {
+		for (int i = 0; i < frames; i++) {
+			new HybridBinarizer(sources[i % sources.length]).getBlackMatrix();
+		}
+	}
+
+	private static void runReusable(ReusableBinarizer binarizer, LuminanceSource[] sources, int frames)
+			throws NotFoundException {
+		for (int i = 0; i < frames; i++) {
+			binarizer.setSource(sources[i % sources.length]);
+			binarizer.getBlackMatrix();
+			binarizer.release();
+		}
+	}
+
+	/**
+	 * 对多种尺寸（包括不是8的倍数和小于40的）和内容比较矩阵和一维码使用的行
+	 */
+	private static boolean checkIdentical(Random random) throws WriterException {
+		Size[] sizes = { new Size(600, 600), new Size(203, 161), new Size(40, 40), new Size(37, 120),
+				new Size(481, 77) };
+		boolean identical = true;
+		for (Size size : sizes) {
+			ReusableBinarizer binarizer = new ReusableBinarizer(size.width, size.height);
+			// Several frames through the same instance, so stale buffers would show up
+			for (int content = 0; content < 8; content++) {
+				PlanarYUVLuminanceSource source = createFrame(random, size, new CropRect(0, 0, size.width,
+						size.height), content % 4);
+				BitMatrix expected = blackMatrixOrNull(new HybridBinarizer(source));
+				binarizer.setSource(source);
+				BitMatrix actual;
+				try {
+					actual = blackMatrixOrNull(binarizer);
+					HybridBinarizer reference = new HybridBinarizer(source);
+					for (int y = 0; y < size.height; y += 7) {
+						BitArray expectedRow = blackRowOrNull(reference, y);
+						BitArray actualRow = blackRowOrNull(binarizer, y);
+						if (expectedRow == null ? actualRow != null : !expectedRow.equals(actualRow)) {
+							System.out.println("Row " + y + " mismatch at " + size + " content " + content);
+							identical = false;
+						}
+					}
+				} finally {
+					binarizer.release();
+				}
+				if (expected == null ? actual != null : !expected.equals(actual)) {
+					System.out.println("Mismatch at " + size + " content " + content);
+					identical = false;
+				}
+			}
+		}
+		return identical;
+	}
+
+	private static BitMatrix blackMatrixOrNull(com.google.zxing.Binarizer binarizer) {
+		try {
+			// Copy, the reusable matrix is overwritten by the next frame
+			return binarizer.getBlackMatrix().clone();
+		} catch (NotFoundException e) {
+			return null;
+		}
+	}
+
+	private static BitArray blackRowOrNull(com.google.zxing.Binarizer binarizer, int y) {
+		try {
+			return binarizer.getBlackRow(y, null);
+		} catch (NotFoundException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param content
+	 *                  0：二维码，1：随机噪声，2：横向渐变加二维码，3：纯色
+	 */
+	private static PlanarYUVLuminanceSource createFrame(Random random, Size size, CropRect cropRect, int content)
+			throws WriterException {
+		byte[] data = new byte[size.size() * 3 / 2];
+		int width = size.width;
+		int height = size.height;
+		BitMatrix code = null;
+		if (content == 0 || content == 2) {
+			int codeSize = Math.max(21, Math.min(cropRect.width(), cropRect.height()) * 2 / 3);
+			code = new QRCodeWriter().encode("frame " + random.nextInt(), BarcodeFormat.QR_CODE, codeSize, codeSize);
+		}
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int value;
+				switch (content) {
+				case 1:
+					value = random.nextInt(256);
+					break;
+				case 2:
+					value = 60 + x * 180 / width;
+					break;
+				case 3:
+					value = 128;
+					break;
+				default:
+					value = 200 + random.nextInt(30);
+					break;
+				}
+				if (code != null) {
+					int codeX = x - cropRect.left - (cropRect.width() - code.getWidth()) / 2;
+					int codeY = y - cropRect.top - (cropRect.height() - code.getHeight()) / 2;
+					if (codeX >= 0 && codeY >= 0 && codeX < code.getWidth() && codeY < code.getHeight()
+							&& code.get(codeX, codeY)) {
+						value = value / 4 + random.nextInt(20);
+					}
+				}
+				data[y * width + x] = (byte) value;
+			}
+		}
+		return new PlanarYUVLuminanceSource(data, size, cropRect);
+	}
+}
@@ -0,0 +1,167 @@
+package com.samonxu.qrcode.cli;
+
+import com.google.zxing.BarcodeFormat;
+import com.samonxu.qrcode.core.decode.DecodeProfile;
+import com.samonxu.qrcode.core.decode.EffortPolicy;
+import com.samonxu.qrcode.core.decode.FrameDecoder;
+import com.samonxu.qrcode.core.decode.ReaderStats;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.imageio.ImageIO;
+
+/**
+ * 批量解码一个目录（包括子目录）下的所有图片，结果逐条输出到标准输出或文件，吞吐量统计输出到标准错误。
+ * <p>
+ * 用法：BulkDecoder [--format csv|json] [--multi] [--threads n] [--output file]
+ * [--profile name [--formats f1,f2]] [--adaptive] &lt;dir&gt;
+ * </p>
+ * 解码参数与DecodeThread相同：UTF-8字符集、逐级尝试所有解码级别，--multi对应多码模式。
+ * --profile只识别{@link DecodeProfile}中的格式，profile为custom时由--formats指定，各reader的耗时也输出到标准错误。
+ */
+public class BulkDecoder {
+
+	private static final String USAGE = "Usage: BulkDecoder [--format csv|json] [--multi] [--threads n] [--output file]"
+			+ " [--profile qr|2d|retail_1d|all|custom [--formats f1,f2]] [--adaptive] <dir>";
+
+	public static void main(String[] args) throws Exception {
+		String format = "csv";
+		boolean multiDecode = false;
+		int threads = Runtime.getRuntime().availableProcessors();
+		String output = null;
+		String dir = null;
+		String profileName = null;
+		List<BarcodeFormat> customFormats = null;
+		boolean adaptive = false;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if ("--format".equals(arg) && i + 1 < args.length) {
+				format = args[++i];
+			} else if ("--multi".equals(arg)) {
+				multiDecode = true;
+			} else if ("--threads".equals(arg) && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			} else if ("--output".equals(arg) && i + 1 < args.length) {
+				output = args[++i];
+			} else if ("--profile".equals(arg) && i + 1 < args.length) {
+				profileName = args[++i];
+			} else if ("--formats".equals(arg) && i + 1 < args.length) {
+				customFormats = new ArrayList<BarcodeFormat>();
+				for (String name : args[++i].split(",")) {
+					customFormats.add(BarcodeFormat.valueOf(name.trim().toUpperCase(Locale.US)));
+				}
+			} else if ("--adaptive".equals(arg)) {
+				adaptive = true;
+			} else if (!arg.startsWith("--") && dir == null) {
+				dir = arg;
+			} else {
+				exitWithUsage();
+			}
+		}
+		if (dir == null || threads < 1 || !("csv".equals(format) || "json".equals(format))) {
+			exitWithUsage();
+		}
+		DecodeProfile profile = null;
+		if (profileName != null) {
+			profile = DecodeProfile.forName(profileName, customFormats, adaptive);
+		} else if (adaptive) {
+			profile = DecodeProfile.createAll().withAdaptive(true);
+		}
+		File root = new File(dir);
+		if (!root.isDirectory()) {
+			System.err.println("Not a directory: " + dir);
+			System.exit(2);
+		}
+
+		long start = System.nanoTime();
+		List<File> files = listImages(root);
+		OutputStream out = output == null ? System.out : new FileOutputStream(output);
+		ResultWriter writer = ResultWriter.create(format,
+				new BufferedWriter(new OutputStreamWriter(out, "UTF-8")));
+		writer.writeHeader();
+
+		final boolean multi = multiDecode;
+		final DecodeProfile decodeProfile = profile;
+		final ReaderStats readerStats = new ReaderStats();
+		ThreadLocal<FrameDecoder> decoders = new ThreadLocal<FrameDecoder>() {
+			@Override
+			protected FrameDecoder initialValue() {
+				FrameDecoder frameDecoder = new FrameDecoder(null);
+				frameDecoder.setMultiDecode(multi);
+				frameDecoder.setEffortPolicy(EffortPolicy.createForStillImage());
+				frameDecoder.setDecodeProfile(decodeProfile);
+				frameDecoder.setReaderStats(readerStats);
+				return frameDecoder;
+			}
+		};
+		DecodeTask.Counters counters = new DecodeTask.Counters();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new DecodeTask(files, 0, files.size(), decoders, writer, counters));
+		} finally {
+			pool.shutdown();
+			writer.close();
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.println(String.format(Locale.US,
+				"%d images in %.2fs (%.1f images/sec, %d threads): %d decoded, %d not found, %d errors",
+				files.size(), seconds, seconds > 0 ? files.size() / seconds : 0, threads,
+				counters.decoded.get(), counters.notFound.get(), counters.errors.get()));
+		System.err.println("Profile " + (profile == null ? DecodeProfile.ALL : profile) + ", readers: "
+				+ readerStats.report());
+	}
+
+	/**
+	 * 按文件后缀找出ImageIO能读取的图片，结果按路径排序，保证每次运行的任务划分相同
+	 */
+	static List<File> listImages(File root) {
+		Set<String> suffixes = new HashSet<String>();
+		for (String suffix : ImageIO.getReaderFileSuffixes()) {
+			suffixes.add(suffix.toLowerCase(Locale.US));
+		}
+		List<File> images = new ArrayList<File>();
+		Deque<File> pending = new ArrayDeque<File>();
+		pending.push(root);
+		while (!pending.isEmpty()) {
+			File[] children = pending.pop().listFiles();
+			if (children == null) {
+				continue;
+			}
+			Arrays.sort(children);
+			for (File child : children) {
+				if (child.isDirectory()) {
+					pending.push(child);
+				} else {
+					String name = child.getName();
+					int dot = name.lastIndexOf('.');
+					if (dot >= 0 && suffixes.contains(name.substring(dot + 1).toLowerCase(Locale.US))) {
+						images.add(child);
+					}
+				}
+			}
+		}
+		Collections.sort(images);
+		return images;
+	}
+
+	private static void exitWithUsage() {
+		System.err.println(USAGE);
+		System.exit(1);
+	}
+}
@@ -0,0 +1,124 @@
+package com.samonxu.qrcode.cli;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.samonxu.qrcode.core.capture.CaptureReader;
+import com.samonxu.qrcode.core.capture.CaptureReplayer;
+import com.samonxu.qrcode.core.capture.CapturedFrame;
+import com.samonxu.qrcode.core.decode.DecodeProfile;
+import com.samonxu.qrcode.core.decode.DecodeResult;
+import com.samonxu.qrcode.core.decode.EffortPolicy;
+import com.samonxu.qrcode.core.decode.FrameDecoder;
+import com.samonxu.qrcode.core.decode.InversionScheduler;
+import com.samonxu.qrcode.core.decode.ReaderStats;
+import com.samonxu.qrcode.core.decode.preprocess.AdaptivePreprocessor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 回放设备上录制的帧文件，每帧输出一行解码结果，最后输出回放统计。
+ * <p>
+ * 用法：CaptureReplay [--realtime] [--multi] [--no-preprocess] [--profile name [--formats f1,f2]] [--adaptive] &lt;file&gt;
+ * </p>
+ * 默认与相机预览一样开启自适应预处理、逐级解码和原图/反色交替，--realtime按录制时的帧间隔回放，否则以最快速度回放。
+ * --profile和--adaptive与BulkDecoder相同，各reader的耗时也输出到标准错误。
+ */
+public class CaptureReplay {
+
+	private static final String USAGE = "Usage: CaptureReplay [--realtime] [--multi] [--no-preprocess]"
+			+ " [--profile qr|2d|retail_1d|all|custom [--formats f1,f2]] [--adaptive] <file>";
+
+	public static void main(String[] args) throws Exception {
+		boolean realtime = false;
+		boolean multiDecode = false;
+		boolean preprocess = true;
+		String path = null;
+		String profileName = null;
+		List<BarcodeFormat> customFormats = null;
+		boolean adaptive = false;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if ("--realtime".equals(arg)) {
+				realtime = true;
+			} else if ("--multi".equals(arg)) {
+				multiDecode = true;
+			} else if ("--no-preprocess".equals(arg)) {
+				preprocess = false;
+			} else if ("--profile".equals(arg) && i + 1 < args.length) {
+				profileName = args[++i];
+			} else if ("--formats".equals(arg) && i + 1 < args.length) {
+				customFormats = new ArrayList<BarcodeFormat>();
+				for (String name : args[++i].split(",")) {
+					customFormats.add(BarcodeFormat.valueOf(name.trim().toUpperCase(Locale.US)));
+				}
+			} else if ("--adaptive".equals(arg)) {
+				adaptive = true;
+			} else if (!arg.startsWith("--") && path == null) {
+				path = arg;
+			} else {
+				exitWithUsage();
+			}
+		}
+		if (path == null) {
+			exitWithUsage();
+		}
+		DecodeProfile profile = null;
+		if (profileName != null) {
+			profile = DecodeProfile.forName(profileName, customFormats, adaptive);
+		} else if (adaptive) {
+			profile = DecodeProfile.createAll().withAdaptive(true);
+		}
+
+		CaptureReader reader = new CaptureReader(new File(path));
+		if (!reader.isIndexed()) {
+			System.err.println("Capture file has no index, recovered " + reader.getFrameCount() + " frames");
+		}
+		FrameDecoder decoder = new FrameDecoder(null);
+		decoder.setMultiDecode(multiDecode);
+		if (preprocess) {
+			decoder.setPreprocessor(new AdaptivePreprocessor());
+		}
+		decoder.setEffortPolicy(new EffortPolicy());
+		decoder.setDecodeProfile(profile);
+		ReaderStats readerStats = new ReaderStats();
+		decoder.setReaderStats(readerStats);
+		CaptureReplayer replayer = new CaptureReplayer(reader, decoder);
+		replayer.setRealtime(realtime);
+		replayer.setInversionScheduler(new InversionScheduler());
+		CaptureReplayer.Stats stats = replayer.replay(new CaptureReplayer.Listener() {
+			@Override
+			public void onFrameDecoded(CapturedFrame frame, DecodeResult result) {
+				StringBuilder line = new StringBuilder();
+				line.append(frame.index).append('\t').append(frame.timestampNanos / 1000000L).append("ms\t")
+						.append(frame.size).append('\t').append(frame.cropRect).append('\t');
+				if (result == null) {
+					line.append("not_found");
+				} else {
+					line.append(result.getDecodeMillis()).append("ms ")
+							.append(EffortPolicy.getLevelName(result.getEffortLevel()));
+					if (result.isInverted()) {
+						line.append(" inverted");
+					}
+					if (result.isPreprocessed()) {
+						line.append(" preprocessed");
+					}
+					for (Result code : result.getResults()) {
+						line.append('\t').append(code.getBarcodeFormat()).append(':').append(code.getText());
+					}
+				}
+				System.out.println(line);
+			}
+		});
+		System.err.println(stats + ", " + decoder.getBudgetExceededCount() + " over budget");
+		System.err.println("Profile " + (profile == null ? DecodeProfile.ALL : profile) + ", readers: "
+				+ readerStats.report());
+	}
+
+	private static void exitWithUsage() {
+		System.err.println(USAGE);
+		System.exit(1);
+	}
+}
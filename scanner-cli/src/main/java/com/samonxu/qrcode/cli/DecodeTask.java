@@ -0,0 +1,94 @@
+package com.samonxu.qrcode.cli;
+
+import com.samonxu.qrcode.core.decode.DecodeResult;
+import com.samonxu.qrcode.core.decode.FrameDecoder;
+import com.samonxu.qrcode.core.source.PlanarYUVLuminanceSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 把文件列表二分成子任务，由ForkJoinPool的工作窃取在线程间平衡耗时不均的图片
+ */
+class DecodeTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+	// Small enough that one huge photo does not hold back a whole batch
+	private static final int BATCH_SIZE = 4;
+
+	static class Counters {
+		final AtomicInteger decoded = new AtomicInteger();
+		final AtomicInteger notFound = new AtomicInteger();
+		final AtomicInteger errors = new AtomicInteger();
+	}
+
+	private final List<File> files;
+	private final int from;
+	private final int to;
+	private final ThreadLocal<FrameDecoder> decoders;
+	private final ResultWriter writer;
+	private final Counters counters;
+
+	DecodeTask(List<File> files, int from, int to, ThreadLocal<FrameDecoder> decoders, ResultWriter writer,
+			Counters counters) {
+		this.files = files;
+		this.from = from;
+		this.to = to;
+		this.decoders = decoders;
+		this.writer = writer;
+		this.counters = counters;
+	}
+
+	@Override
+	protected void compute() {
+		if (to - from <= BATCH_SIZE) {
+			for (int i = from; i < to; i++) {
+				decodeFile(files.get(i));
+			}
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		invokeAll(new DecodeTask(files, from, middle, decoders, writer, counters),
+				new DecodeTask(files, middle, to, decoders, writer, counters));
+	}
+
+	private void decodeFile(File file) {
+		long start = System.currentTimeMillis();
+		String path = file.getPath();
+		try {
+			PlanarYUVLuminanceSource source = ImageLoader.load(file);
+			if (source == null) {
+				counters.errors.incrementAndGet();
+				writer.write(path, ResultWriter.STATUS_ERROR, null, -1, System.currentTimeMillis() - start,
+						"Unsupported image");
+				return;
+			}
+			DecodeResult result = decoders.get().decodeAllLevels(source);
+			long millis = System.currentTimeMillis() - start;
+			if (result == null) {
+				counters.notFound.incrementAndGet();
+				writer.write(path, ResultWriter.STATUS_NOT_FOUND, null, -1, millis, null);
+			} else {
+				counters.decoded.incrementAndGet();
+				writer.write(path, ResultWriter.STATUS_OK, result.getResults(), result.getEffortLevel(), millis, null);
+			}
+		} catch (IOException e) {
+			counters.errors.incrementAndGet();
+			try {
+				writer.write(path, ResultWriter.STATUS_ERROR, null, -1, System.currentTimeMillis() - start,
+						String.valueOf(e.getMessage()));
+			} catch (IOException ignored) {
+			}
+		} catch (RuntimeException e) {
+			// A corrupt file must not abort the remaining archive
+			counters.errors.incrementAndGet();
+			try {
+				writer.write(path, ResultWriter.STATUS_ERROR, null, -1, System.currentTimeMillis() - start,
+						e.toString());
+			} catch (IOException ignored) {
+			}
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package com.samonxu.qrcode.cli;
+
+import com.samonxu.qrcode.core.CropRect;
+import com.samonxu.qrcode.core.Size;
+import com.samonxu.qrcode.core.source.PlanarYUVLuminanceSource;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * 用ImageIO读取图片并直接转换为亮度数据，不生成完整的ARGB像素数组
+ */
+public class ImageLoader {
+
+	/**
+	 * @return 整张图片的亮度数据，ImageIO不支持的格式返回null
+	 */
+	public static PlanarYUVLuminanceSource load(File file) throws IOException {
+		BufferedImage image = ImageIO.read(file);
+		if (image == null) {
+			return null;
+		}
+		int width = image.getWidth();
+		int height = image.getHeight();
+		byte[] luminances;
+		if (image.getType() == BufferedImage.TYPE_BYTE_GRAY
+				&& image.getRaster().getDataBuffer() instanceof DataBufferByte
+				&& image.getRaster().getDataBuffer().getSize() == width * height) {
+			// Greyscale images already store one luminance byte per pixel
+			luminances = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+		} else {
+			luminances = new byte[width * height];
+			int[] row = new int[width];
+			for (int y = 0; y < height; y++) {
+				image.getRGB(0, y, width, 1, row, 0, width);
+				int offset = y * width;
+				for (int x = 0; x < width; x++) {
+					luminances[offset + x] = toLuminance(row[x]);
+				}
+			}
+		}
+		return new PlanarYUVLuminanceSource(luminances, new Size(width, height), new CropRect(0, 0, width, height));
+	}
+
+	/**
+	 * 与RGBLuminanceSource相同的换算方式，透明像素按白色处理
+	 */
+	private static byte toLuminance(int pixel) {
+		int alpha = (pixel >>> 24) & 0xff;
+		int r = (pixel >> 16) & 0xff;
+		int g = (pixel >> 8) & 0xff;
+		int b = pixel & 0xff;
+		if (alpha < 0xff) {
+			r = (r * alpha + 0xff * (0xff - alpha)) / 0xff;
+			g = (g * alpha + 0xff * (0xff - alpha)) / 0xff;
+			b = (b * alpha + 0xff * (0xff - alpha)) / 0xff;
+		}
+		if (r == g && g == b) {
+			return (byte) r;
+		}
+		return (byte) ((r + g + g + b) >> 2);
+	}
+}
@@ -0,0 +1,171 @@
+package com.samonxu.qrcode.cli;
+
+import com.google.zxing.Result;
+import com.samonxu.qrcode.core.decode.EffortPolicy;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 每解完一张图片立即输出一条记录，多个线程可以同时调用
+ */
+public abstract class ResultWriter {
+	public static final String STATUS_OK = "ok";
+	public static final String STATUS_NOT_FOUND = "not_found";
+	public static final String STATUS_ERROR = "error";
+
+	protected final Writer writer;
+
+	protected ResultWriter(Writer writer) {
+		this.writer = writer;
+	}
+
+	public static ResultWriter create(String format, Writer writer) {
+		if ("json".equals(format)) {
+			return new JsonLinesWriter(writer);
+		}
+		if ("csv".equals(format)) {
+			return new CsvWriter(writer);
+		}
+		throw new IllegalArgumentException("Unknown output format: " + format);
+	}
+
+	public synchronized void writeHeader() throws IOException {
+	}
+
+	/**
+	 * @param results 识别出的码，status不是{@link #STATUS_OK}时为null
+	 * @param level 解出时使用的解码级别，没有解出时为-1
+	 * @param message 出错原因，没有出错时为null
+	 */
+	public synchronized void write(String path, String status, Result[] results, int level, long millis,
+			String message) throws IOException {
+		writeRecord(path, status, results, level, millis, message);
+		writer.flush();
+	}
+
+	protected abstract void writeRecord(String path, String status, Result[] results, int level, long millis,
+			String message) throws IOException;
+
+	protected static String getLevelName(int level) {
+		return level < 0 ? "" : EffortPolicy.getLevelName(level);
+	}
+
+	public synchronized void close() throws IOException {
+		writer.close();
+	}
+
+	/**
+	 * 每个码一行：path,status,format,text,level,millis；没有识别出的图片也占一行，format和text为空
+	 */
+	static class CsvWriter extends ResultWriter {
+		CsvWriter(Writer writer) {
+			super(writer);
+		}
+
+		@Override
+		public synchronized void writeHeader() throws IOException {
+			writer.write("path,status,format,text,level,millis\n");
+			writer.flush();
+		}
+
+		@Override
+		protected void writeRecord(String path, String status, Result[] results, int level, long millis,
+				String message) throws IOException {
+			if (results == null) {
+				writeLine(path, status, "", message == null ? "" : message, "", millis);
+				return;
+			}
+			for (Result result : results) {
+				writeLine(path, status, result.getBarcodeFormat().toString(), result.getText(), getLevelName(level),
+						millis);
+			}
+		}
+
+		private void writeLine(String path, String status, String format, String text, String level, long millis)
+				throws IOException {
+			StringBuilder line = new StringBuilder();
+			line.append(escape(path)).append(',').append(status).append(',').append(format).append(',')
+					.append(escape(text)).append(',').append(level).append(',').append(millis).append('\n');
+			writer.write(line.toString());
+		}
+
+		private static String escape(String value) {
+			if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+					&& value.indexOf('\r') < 0) {
+				return value;
+			}
+			return '"' + value.replace("\"", "\"\"") + '"';
+		}
+	}
+
+	/**
+	 * 每张图片一个JSON对象，占一行
+	 */
+	static class JsonLinesWriter extends ResultWriter {
+		JsonLinesWriter(Writer writer) {
+			super(writer);
+		}
+
+		@Override
+		protected void writeRecord(String path, String status, Result[] results, int level, long millis,
+				String message) throws IOException {
+			StringBuilder line = new StringBuilder();
+			line.append("{\"path\":");
+			appendString(line, path);
+			line.append(",\"status\":\"").append(status).append("\",\"millis\":").append(millis);
+			if (level >= 0) {
+				line.append(",\"level\":\"").append(getLevelName(level)).append('"');
+			}
+			if (message != null) {
+				line.append(",\"message\":");
+				appendString(line, message);
+			}
+			line.append(",\"results\":[");
+			if (results != null) {
+				for (int i = 0; i < results.length; i++) {
+					if (i > 0) {
+						line.append(',');
+					}
+					line.append("{\"format\":\"").append(results[i].getBarcodeFormat()).append("\",\"text\":");
+					appendString(line, results[i].getText());
+					line.append('}');
+				}
+			}
+			line.append("]}\n");
+			writer.write(line.toString());
+		}
+
+		private static void appendString(StringBuilder sb, String value) {
+			sb.append('"');
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				switch (c) {
+				case '"':
+					sb.append("\\\"");
+					break;
+				case '\\':
+					sb.append("\\\\");
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				case '\r':
+					sb.append("\\r");
+					break;
+				case '\t':
+					sb.append("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						sb.append(String.format("\\u%04x", (int) c));
+					} else {
+						sb.append(c);
+					}
+					break;
+				}
+			}
+			sb.append('"');
+		}
+	}
+}
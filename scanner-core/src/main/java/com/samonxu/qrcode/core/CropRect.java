@@ -0,0 +1,49 @@
+package com.samonxu.qrcode.core;
+
+/**
+ * 图像上要解码的矩形区域，right和bottom不包含在区域内
+ */
+public class CropRect {
+	public CropRect(int left, int top, int right, int bottom) {
+		this.left = left;
+		this.top = top;
+		this.right = right;
+		this.bottom = bottom;
+	}
+
+	public CropRect(CropRect src) {
+		this(src.left, src.top, src.right, src.bottom);
+	}
+
+	public int width() {
+		return right - left;
+	}
+
+	public int height() {
+		return bottom - top;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof CropRect)) {
+			return false;
+		}
+		CropRect r = (CropRect) obj;
+		return left == r.left && top == r.top && right == r.right && bottom == r.bottom;
+	}
+
+	@Override
+	public int hashCode() {
+		return ((left * 31 + top) * 31 + right) * 31 + bottom;
+	}
+
+	public int left;
+	public int top;
+	public int right;
+	public int bottom;
+
+	@Override
+	public String toString() {
+		return "(" + left + ", " + top + " - " + right + ", " + bottom + ")";
+	}
+}
@@ -1,4 +1,4 @@
-package com.samonxu.qrcode.demo.camera;
+package com.samonxu.qrcode.core;
 
 public class Size {
 	public Size(int w, int h) {
@@ -20,6 +20,11 @@ public class Size {
 		return width == s.width && height == s.height;
 	}
 
+	@Override
+	public int hashCode() {
+		return width * 31 + height;
+	}
+
 	public int size() {
 		return width * height;
 	}
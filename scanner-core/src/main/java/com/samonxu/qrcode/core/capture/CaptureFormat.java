@@ -0,0 +1,33 @@
+package com.samonxu.qrcode.core.capture;
+
+/**
+ * 帧录制文件的格式，所有数值均为大端序。
+ * <p>
+ * 文件头：magic(int) version(int) createdMillis(long)<br>
+ * 帧记录，依次追加：magic(int) timestampNanos(long) width(int) height(int)
+ * cropLeft(int) cropTop(int) cropRight(int) cropBottom(int) length(int) Y数据(length字节)<br>
+ * 索引，关闭时写入：magic(int) count(int) 每帧记录的偏移(long)...<br>
+ * 文件尾：indexOffset(long) magic(int)
+ * </p>
+ * 录制中途被杀死时没有索引和文件尾，读取时按顺序扫描帧记录，丢弃最后一条不完整的记录。
+ */
+final class CaptureFormat {
+	static final int FILE_MAGIC = 0x51524341; // "QRCA"
+	static final int VERSION = 1;
+	static final int FILE_HEADER_SIZE = 16;
+
+	static final int FRAME_MAGIC = 0x46524d45; // "FRME"
+	static final int FRAME_HEADER_SIZE = 40;
+
+	static final int INDEX_MAGIC = 0x494e4458; // "INDX"
+	static final int INDEX_HEADER_SIZE = 8;
+
+	static final int FOOTER_MAGIC = 0x51454e44; // "QEND"
+	static final int FOOTER_SIZE = 12;
+
+	/** 读取时整个文件映射为一个MappedByteBuffer，所以不能超过int范围 */
+	static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+	private CaptureFormat() {
+	}
+}
@@ -0,0 +1,128 @@
+package com.samonxu.qrcode.core.capture;
+
+import com.samonxu.qrcode.core.CropRect;
+import com.samonxu.qrcode.core.Size;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * 通过内存映射读取{@link CaptureWriter}写出的录制文件，可以按下标随机读取帧。
+ * 没有索引的文件（录制时被中断）会顺序扫描恢复出所有完整的帧。
+ */
+public class CaptureReader {
+	private final MappedByteBuffer buffer;
+	private final long createdMillis;
+	private final long[] offsets;
+	private final boolean isIndexed;
+
+	public CaptureReader(File file) throws IOException {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = randomAccessFile.getChannel();
+			long size = channel.size();
+			if (size > CaptureFormat.MAX_FILE_SIZE) {
+				throw new IOException("Capture file too large: " + size);
+			}
+			// The mapping stays valid after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		} finally {
+			randomAccessFile.close();
+		}
+		if (buffer.limit() < CaptureFormat.FILE_HEADER_SIZE || buffer.getInt(0) != CaptureFormat.FILE_MAGIC) {
+			throw new IOException("Not a capture file: " + file);
+		}
+		int version = buffer.getInt(4);
+		if (version != CaptureFormat.VERSION) {
+			throw new IOException("Unsupported capture file version: " + version);
+		}
+		createdMillis = buffer.getLong(8);
+		long[] indexed = readIndex();
+		isIndexed = indexed != null;
+		offsets = isIndexed ? indexed : scanFrames();
+	}
+
+	public int getFrameCount() {
+		return offsets.length;
+	}
+
+	/**
+	 * @return 开始录制时的系统时间
+	 */
+	public long getCreatedMillis() {
+		return createdMillis;
+	}
+
+	/**
+	 * @return 文件是否正常关闭并带有索引
+	 */
+	public boolean isIndexed() {
+		return isIndexed;
+	}
+
+	/**
+	 * 可以在多个线程中同时调用，每次返回数据的新拷贝
+	 */
+	public CapturedFrame getFrame(int index) {
+		if (index < 0 || index >= offsets.length) {
+			throw new IndexOutOfBoundsException("Frame " + index + " of " + offsets.length);
+		}
+		ByteBuffer record = buffer.duplicate();
+		record.position((int) offsets[index] + 4);
+		long timestampNanos = record.getLong();
+		Size size = new Size(record.getInt(), record.getInt());
+		CropRect cropRect = new CropRect(record.getInt(), record.getInt(), record.getInt(), record.getInt());
+		byte[] data = new byte[record.getInt()];
+		record.get(data);
+		return new CapturedFrame(index, timestampNanos, size, cropRect, data);
+	}
+
+	private long[] readIndex() {
+		int limit = buffer.limit();
+		if (limit < CaptureFormat.FILE_HEADER_SIZE + CaptureFormat.INDEX_HEADER_SIZE + CaptureFormat.FOOTER_SIZE
+				|| buffer.getInt(limit - 4) != CaptureFormat.FOOTER_MAGIC) {
+			return null;
+		}
+		long indexOffset = buffer.getLong(limit - CaptureFormat.FOOTER_SIZE);
+		if (indexOffset < CaptureFormat.FILE_HEADER_SIZE || indexOffset > limit - CaptureFormat.FOOTER_SIZE
+				- CaptureFormat.INDEX_HEADER_SIZE || buffer.getInt((int) indexOffset) != CaptureFormat.INDEX_MAGIC) {
+			return null;
+		}
+		int count = buffer.getInt((int) indexOffset + 4);
+		if (count < 0 || indexOffset + CaptureFormat.INDEX_HEADER_SIZE + count * 8L + CaptureFormat.FOOTER_SIZE != limit) {
+			return null;
+		}
+		long[] result = new long[count];
+		int position = (int) indexOffset + CaptureFormat.INDEX_HEADER_SIZE;
+		for (int i = 0; i < count; i++) {
+			result[i] = buffer.getLong(position + i * 8);
+		}
+		return result;
+	}
+
+	private long[] scanFrames() {
+		long[] result = new long[64];
+		int count = 0;
+		int position = CaptureFormat.FILE_HEADER_SIZE;
+		int limit = buffer.limit();
+		while (limit - position >= CaptureFormat.FRAME_HEADER_SIZE
+				&& buffer.getInt(position) == CaptureFormat.FRAME_MAGIC) {
+			int length = buffer.getInt(position + CaptureFormat.FRAME_HEADER_SIZE - 4);
+			if (length < 0 || length > limit - position - CaptureFormat.FRAME_HEADER_SIZE) {
+				// The last frame was cut off while recording
+				break;
+			}
+			if (count == result.length) {
+				result = Arrays.copyOf(result, count * 2);
+			}
+			result[count++] = position;
+			position += CaptureFormat.FRAME_HEADER_SIZE + length;
+		}
+		return Arrays.copyOf(result, count);
+	}
+}
@@ -0,0 +1,123 @@
+package com.samonxu.qrcode.core.capture;
+
+import com.samonxu.qrcode.core.decode.DecodeResult;
+import com.samonxu.qrcode.core.decode.FrameDecoder;
+import com.samonxu.qrcode.core.decode.InversionScheduler;
+import com.samonxu.qrcode.core.source.PlanarYUVLuminanceSource;
+
+import java.util.Locale;
+
+/**
+ * 把录制文件中的帧依次交给{@link FrameDecoder}解码，可以按录制时的节奏或以最快速度回放。
+ * 与相机预览一样，上一帧解码完成后才取下一帧。
+ */
+public class CaptureReplayer {
+
+	public interface Listener {
+		/**
+		 * 在回放线程中回调
+		 *
+		 * @param result
+		 *                  解码结果，没有识别出时为null
+		 */
+		void onFrameDecoded(CapturedFrame frame, DecodeResult result);
+	}
+
+	/**
+	 * 回放统计
+	 */
+	public static class Stats {
+		public final int frames;
+		public final int decodedFrames;
+		public final long elapsedMillis;
+		public final long decodeMillis;
+
+		Stats(int frames, int decodedFrames, long elapsedMillis, long decodeMillis) {
+			this.frames = frames;
+			this.decodedFrames = decodedFrames;
+			this.elapsedMillis = elapsedMillis;
+			this.decodeMillis = decodeMillis;
+		}
+
+		public double getFramesPerSecond() {
+			return elapsedMillis == 0 ? 0 : frames * 1000.0 / elapsedMillis;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.US, "%d frames, %d decoded, %dms elapsed, %dms decoding, %.1f fps", frames,
+					decodedFrames, elapsedMillis, decodeMillis, getFramesPerSecond());
+		}
+	}
+
+	private final CaptureReader reader;
+	private final FrameDecoder decoder;
+	private boolean isRealtime = false;
+	private InversionScheduler inversionScheduler;
+
+	/**
+	 * @param decoder
+	 *                  按需要设置好多码模式和预处理的解码器
+	 */
+	public CaptureReplayer(CaptureReader reader, FrameDecoder decoder) {
+		this.reader = reader;
+		this.decoder = decoder;
+	}
+
+	/**
+	 * @param realtime
+	 *                  true时按帧的录制时间间隔回放，解码比录制慢时不等待直接解下一帧；false时以最快速度回放
+	 */
+	public void setRealtime(boolean realtime) {
+		isRealtime = realtime;
+	}
+
+	/**
+	 * 设置后像相机预览一样按调度在原图和反色之间切换，传入null时只按原图解码
+	 */
+	public void setInversionScheduler(InversionScheduler scheduler) {
+		inversionScheduler = scheduler;
+	}
+
+	/**
+	 * 在当前线程同步回放所有帧
+	 *
+	 * @throws InterruptedException
+	 *                   按录制节奏等待时被中断
+	 */
+	public Stats replay(Listener listener) throws InterruptedException {
+		int count = reader.getFrameCount();
+		int decodedFrames = 0;
+		long decodeNanos = 0;
+		long startNanos = System.nanoTime();
+		long firstTimestamp = 0;
+		for (int i = 0; i < count; i++) {
+			CapturedFrame frame = reader.getFrame(i);
+			if (i == 0) {
+				firstTimestamp = frame.timestampNanos;
+			} else if (isRealtime) {
+				long waitNanos = (frame.timestampNanos - firstTimestamp) - (System.nanoTime() - startNanos);
+				if (waitNanos > 0) {
+					Thread.sleep(waitNanos / 1000000L, (int) (waitNanos % 1000000L));
+				}
+			}
+			long decodeStart = System.nanoTime();
+			PlanarYUVLuminanceSource source = frame.toLuminanceSource();
+			if (inversionScheduler != null && inversionScheduler.nextFrameInverted()) {
+				source = source.invert();
+			}
+			DecodeResult result = decoder.decode(source);
+			decodeNanos += System.nanoTime() - decodeStart;
+			if (inversionScheduler != null) {
+				inversionScheduler.onDecodeFinished(source.isInverted(), result != null);
+			}
+			if (result != null) {
+				decodedFrames++;
+			}
+			if (listener != null) {
+				listener.onFrameDecoded(frame, result);
+			}
+		}
+		return new Stats(count, decodedFrames, (System.nanoTime() - startNanos) / 1000000L, decodeNanos / 1000000L);
+	}
+}
@@ -0,0 +1,307 @@
+package com.samonxu.qrcode.core.capture;
+
+import com.samonxu.qrcode.core.CropRect;
+import com.samonxu.qrcode.core.Size;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 把相机帧追加写入录制文件，格式见{@link CaptureFormat}。
+ * <p>
+ * {@link #offer}只把帧放入有界队列，不做任何IO，由单独的写线程通过FileChannel写入；
+ * 写入跟不上时直接丢弃新帧，保证调用线程（相机线程）不会被阻塞。
+ * </p>
+ * {@link #closeAsync}也只是通知写线程，剩余的帧、索引和刷盘都在写线程中完成。
+ * 文件大小有上限，默认为{@link CaptureReader}能读取的最大文件，加上索引会超出上限的帧不再接受，见{@link #isFull()}。
+ */
+public class CaptureWriter {
+	private static final int DEFAULT_QUEUE_CAPACITY = 8;
+
+	public interface CloseListener {
+		/**
+		 * 在写线程中回调
+		 *
+		 * @param error
+		 *                  写入过程中出现的错误，成功时为null
+		 */
+		void onClosed(CaptureWriter writer, IOException error);
+	}
+
+	private static class PendingFrame {
+		final byte[] data;
+		final Size size;
+		final CropRect cropRect;
+		final long timestampNanos;
+
+		PendingFrame(byte[] data, Size size, CropRect cropRect, long timestampNanos) {
+			this.data = data;
+			this.size = size;
+			this.cropRect = cropRect;
+			this.timestampNanos = timestampNanos;
+		}
+	}
+
+	// Queued after the last frame to tell the writer thread to finish
+	private static final PendingFrame END = new PendingFrame(null, null, null, 0);
+
+	private final File file;
+	private final RandomAccessFile randomAccessFile;
+	private final FileChannel channel;
+	// Unbounded so END can always be queued without blocking, frames are bounded by queueCapacity
+	private final BlockingQueue<PendingFrame> queue = new LinkedBlockingQueue<PendingFrame>();
+	private final int queueCapacity;
+	private final AtomicInteger queuedFrames = new AtomicInteger();
+	private final Thread writerThread;
+	private final ByteBuffer headerBuffer = ByteBuffer.allocateDirect(CaptureFormat.FRAME_HEADER_SIZE);
+	private final AtomicInteger droppedFrames = new AtomicInteger();
+	private final long maxBytes;
+	// File size once every accepted frame, its index entry and the footer are written
+	private final AtomicLong reservedBytes = new AtomicLong(CaptureFormat.FILE_HEADER_SIZE
+			+ CaptureFormat.INDEX_HEADER_SIZE + CaptureFormat.FOOTER_SIZE);
+	private volatile boolean isFull = false;
+	private long[] offsets = new long[64];
+	private volatile int frameCount = 0;
+	private volatile long position;
+	private volatile IOException writeError;
+	private volatile boolean isClosed = false;
+	private volatile CloseListener closeListener;
+
+	public CaptureWriter(File file) throws IOException {
+		this(file, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * @param queueCapacity
+	 *                  等待写入的最大帧数，超出时丢帧
+	 */
+	public CaptureWriter(File file, int queueCapacity) throws IOException {
+		this(file, queueCapacity, CaptureFormat.MAX_FILE_SIZE);
+	}
+
+	/**
+	 * @param maxBytes
+	 *                  文件大小上限，包括索引，不能超过{@link CaptureReader}能读取的最大文件
+	 */
+	public CaptureWriter(File file, int queueCapacity, long maxBytes) throws IOException {
+		if (maxBytes > CaptureFormat.MAX_FILE_SIZE || maxBytes < reservedBytes.get()) {
+			throw new IllegalArgumentException("Invalid maxBytes: " + maxBytes);
+		}
+		this.file = file;
+		this.maxBytes = maxBytes;
+		randomAccessFile = new RandomAccessFile(file, "rw");
+		randomAccessFile.setLength(0);
+		channel = randomAccessFile.getChannel();
+		ByteBuffer header = ByteBuffer.allocate(CaptureFormat.FILE_HEADER_SIZE);
+		header.putInt(CaptureFormat.FILE_MAGIC).putInt(CaptureFormat.VERSION).putLong(System.currentTimeMillis());
+		header.flip();
+		position = writeFully(header, position);
+		this.queueCapacity = queueCapacity;
+		writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writeLoop();
+			}
+		}, "CaptureWriter");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	/**
+	 * 可以在任意线程调用，不会阻塞。data在写入完成前不能被修改，只写入前size.size()字节（Y数据）。
+	 *
+	 * @return 帧是否进入写入队列，队列已满、文件已达到大小上限或已关闭时返回false
+	 */
+	public boolean offer(byte[] data, Size size, CropRect cropRect, long timestampNanos) {
+		if (isClosed || writeError != null) {
+			return false;
+		}
+		if (data.length < size.size()) {
+			throw new IllegalArgumentException("Frame data is smaller than " + size);
+		}
+		if (isFull) {
+			return false;
+		}
+		if (queuedFrames.incrementAndGet() > queueCapacity) {
+			queuedFrames.decrementAndGet();
+			droppedFrames.incrementAndGet();
+			return false;
+		}
+		long frameBytes = CaptureFormat.FRAME_HEADER_SIZE + size.size() + 8L;
+		if (reservedBytes.addAndGet(frameBytes) > maxBytes) {
+			reservedBytes.addAndGet(-frameBytes);
+			queuedFrames.decrementAndGet();
+			isFull = true;
+			return false;
+		}
+		queue.add(new PendingFrame(data, new Size(size), new CropRect(cropRect), timestampNanos));
+		return true;
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return 是否因文件达到大小上限而不再接受新的帧，之后应该关闭
+	 */
+	public boolean isFull() {
+		return isFull;
+	}
+
+	/**
+	 * @return 已写入文件的帧数
+	 */
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * @return 因写入跟不上而丢弃的帧数
+	 */
+	public int getDroppedFrames() {
+		return droppedFrames.get();
+	}
+
+	public long getBytesWritten() {
+		return position;
+	}
+
+	/**
+	 * 写完队列中剩余的帧，追加索引后关闭文件。会等待写线程结束，不要在UI线程调用。
+	 *
+	 * @throws IOException
+	 *                   写入过程中出现的错误
+	 */
+	public void close() throws IOException {
+		closeAsync(null);
+		boolean interrupted = false;
+		while (true) {
+			try {
+				writerThread.join();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (writeError != null) {
+			throw writeError;
+		}
+	}
+
+	/**
+	 * 不等待写入完成，写线程写完剩余的帧、追加索引并关闭文件后回调listener。可以在任意线程调用，不会阻塞。
+	 *
+	 * @param listener
+	 *                  可以为null
+	 */
+	public void closeAsync(CloseListener listener) {
+		synchronized (this) {
+			if (isClosed) {
+				return;
+			}
+			closeListener = listener;
+			isClosed = true;
+		}
+		queue.add(END);
+	}
+
+	private void writeLoop() {
+		while (true) {
+			PendingFrame frame;
+			try {
+				frame = queue.take();
+			} catch (InterruptedException e) {
+				continue;
+			}
+			if (frame == END) {
+				finish();
+				return;
+			}
+			queuedFrames.decrementAndGet();
+			if (writeError != null) {
+				continue;
+			}
+			try {
+				writeFrame(frame);
+			} catch (IOException e) {
+				writeError = e;
+			}
+		}
+	}
+
+	/**
+	 * 在写线程中追加索引、刷盘并关闭文件
+	 */
+	private void finish() {
+		try {
+			if (writeError == null) {
+				writeIndex();
+				channel.force(false);
+			}
+		} catch (IOException e) {
+			writeError = e;
+		} finally {
+			try {
+				randomAccessFile.close();
+			} catch (IOException e) {
+				if (writeError == null) {
+					writeError = e;
+				}
+			}
+		}
+		CloseListener listener = closeListener;
+		if (listener != null) {
+			listener.onClosed(this, writeError);
+		}
+	}
+
+	private void writeFrame(PendingFrame frame) throws IOException {
+		int length = frame.size.size();
+		headerBuffer.clear();
+		headerBuffer.putInt(CaptureFormat.FRAME_MAGIC).putLong(frame.timestampNanos);
+		headerBuffer.putInt(frame.size.width).putInt(frame.size.height);
+		headerBuffer.putInt(frame.cropRect.left).putInt(frame.cropRect.top);
+		headerBuffer.putInt(frame.cropRect.right).putInt(frame.cropRect.bottom);
+		headerBuffer.putInt(length);
+		headerBuffer.flip();
+		long offset = position;
+		long next = writeFully(headerBuffer, offset);
+		position = writeFully(ByteBuffer.wrap(frame.data, 0, length), next);
+		if (frameCount == offsets.length) {
+			offsets = Arrays.copyOf(offsets, offsets.length * 2);
+		}
+		offsets[frameCount] = offset;
+		frameCount++;
+	}
+
+	private void writeIndex() throws IOException {
+		int count = frameCount;
+		ByteBuffer index = ByteBuffer.allocate(CaptureFormat.INDEX_HEADER_SIZE + count * 8 + CaptureFormat.FOOTER_SIZE);
+		index.putInt(CaptureFormat.INDEX_MAGIC).putInt(count);
+		for (int i = 0; i < count; i++) {
+			index.putLong(offsets[i]);
+		}
+		index.putLong(position).putInt(CaptureFormat.FOOTER_MAGIC);
+		index.flip();
+		position = writeFully(index, position);
+	}
+
+	private long writeFully(ByteBuffer buffer, long offset) throws IOException {
+		while (buffer.hasRemaining()) {
+			offset += channel.write(buffer, offset);
+		}
+		return offset;
+	}
+}
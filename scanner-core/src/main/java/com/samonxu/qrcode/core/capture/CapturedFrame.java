@@ -0,0 +1,31 @@
+package com.samonxu.qrcode.core.capture;
+
+import com.samonxu.qrcode.core.CropRect;
+import com.samonxu.qrcode.core.Size;
+import com.samonxu.qrcode.core.source.PlanarYUVLuminanceSource;
+
+/**
+ * 录制文件中的一帧，data只包含Y数据
+ */
+public class CapturedFrame {
+	public final int index;
+	public final long timestampNanos;
+	public final Size size;
+	public final CropRect cropRect;
+	public final byte[] data;
+
+	CapturedFrame(int index, long timestampNanos, Size size, CropRect cropRect, byte[] data) {
+		this.index = index;
+		this.timestampNanos = timestampNanos;
+		this.size = size;
+		this.cropRect = cropRect;
+		this.data = data;
+	}
+
+	/**
+	 * @return 与录制时交给解码器的图像相同的亮度数据
+	 */
+	public PlanarYUVLuminanceSource toLuminanceSource() {
+		return new PlanarYUVLuminanceSource(data, size, cropRect);
+	}
+}
@@ -0,0 +1,12 @@
+package com.samonxu.qrcode.core.decode;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * {@link DecodeScheduler}的解码回调，在解码线程中调用
+ */
+public interface DecodeCallback<S extends LuminanceSource> {
+	public void onDecodeSuccess(S source, DecodeResult result);
+
+	public void onDecodeFailed(S source);
+}
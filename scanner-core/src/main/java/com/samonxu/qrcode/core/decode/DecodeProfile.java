@@ -0,0 +1,122 @@
+package com.samonxu.qrcode.core.decode;
+
+import com.google.zxing.BarcodeFormat;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * 解码时识别哪些格式。只识别需要的格式时，解不出的帧不必再经过其余每一种reader，这是失败帧耗时的主要来源。
+ * <p>
+ * 自适应模式下按各reader最近的命中率调整尝试顺序，常见的格式先尝试，参见{@link ReaderStats}。
+ * </p>
+ */
+public class DecodeProfile {
+	public static final String QR_ONLY = "qr";
+	public static final String TWO_D = "2d";
+	public static final String RETAIL_1D = "retail_1d";
+	public static final String ALL = "all";
+	public static final String CUSTOM = "custom";
+
+	private final String name;
+	private final Set<BarcodeFormat> formats;
+	private final boolean isAdaptive;
+
+	/**
+	 * @param formats
+	 *                  识别的格式，不能为空
+	 * @param adaptive
+	 *                  是否按命中率调整reader的尝试顺序
+	 */
+	public DecodeProfile(String name, Collection<BarcodeFormat> formats, boolean adaptive) {
+		if (formats.isEmpty()) {
+			throw new IllegalArgumentException("No formats in profile " + name);
+		}
+		this.name = name;
+		this.formats = Collections.unmodifiableSet(EnumSet.copyOf(formats));
+		this.isAdaptive = adaptive;
+	}
+
+	/**
+	 * 只识别二维码
+	 */
+	public static DecodeProfile createQROnly() {
+		return new DecodeProfile(QR_ONLY, EnumSet.of(BarcodeFormat.QR_CODE), false);
+	}
+
+	/**
+	 * 识别所有二维条码
+	 */
+	public static DecodeProfile createTwoD() {
+		return new DecodeProfile(TWO_D, EnumSet.of(BarcodeFormat.QR_CODE, BarcodeFormat.DATA_MATRIX,
+				BarcodeFormat.AZTEC, BarcodeFormat.PDF_417, BarcodeFormat.MAXICODE), false);
+	}
+
+	/**
+	 * 识别商品上的一维码
+	 */
+	public static DecodeProfile createRetail1D() {
+		return new DecodeProfile(RETAIL_1D, EnumSet.of(BarcodeFormat.EAN_13, BarcodeFormat.EAN_8,
+				BarcodeFormat.UPC_A, BarcodeFormat.UPC_E), false);
+	}
+
+	/**
+	 * 识别zxing支持的所有格式，与没有设置profile时相同
+	 */
+	public static DecodeProfile createAll() {
+		return new DecodeProfile(ALL, EnumSet.allOf(BarcodeFormat.class), false);
+	}
+
+	/**
+	 * @param customFormats
+	 *                  name为{@link #CUSTOM}时识别的格式，其他时候忽略
+	 * @throws IllegalArgumentException
+	 *                   未知的名字，或CUSTOM没有指定格式
+	 */
+	public static DecodeProfile forName(String name, Collection<BarcodeFormat> customFormats, boolean adaptive) {
+		DecodeProfile profile;
+		if (QR_ONLY.equals(name)) {
+			profile = createQROnly();
+		} else if (TWO_D.equals(name)) {
+			profile = createTwoD();
+		} else if (RETAIL_1D.equals(name)) {
+			profile = createRetail1D();
+		} else if (ALL.equals(name)) {
+			profile = createAll();
+		} else if (CUSTOM.equals(name)) {
+			if (customFormats == null) {
+				throw new IllegalArgumentException("No formats for custom profile");
+			}
+			profile = new DecodeProfile(CUSTOM, customFormats, adaptive);
+		} else {
+			throw new IllegalArgumentException("Unknown decode profile: " + name);
+		}
+		return profile.isAdaptive == adaptive ? profile : profile.withAdaptive(adaptive);
+	}
+
+	/**
+	 * @return 格式相同、是否自适应不同的profile
+	 */
+	public DecodeProfile withAdaptive(boolean adaptive) {
+		return new DecodeProfile(name, formats, adaptive);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Set<BarcodeFormat> getFormats() {
+		return formats;
+	}
+
+	public boolean isAdaptive() {
+		return isAdaptive;
+	}
+
+	@Override
+	public String toString() {
+		return name + (isAdaptive ? " (adaptive) " : " ") + formats;
+	}
+}
@@ -0,0 +1,59 @@
+package com.samonxu.qrcode.core.decode;
+
+import com.google.zxing.Result;
+
+/**
+ * 一帧的解码结果
+ */
+public class DecodeResult {
+	private final Result[] results;
+	private final long decodeMillis;
+	private final boolean isPreprocessed;
+	private final int effortLevel;
+	private final boolean isInverted;
+
+	public DecodeResult(Result[] results, long decodeMillis, boolean isPreprocessed, int effortLevel,
+			boolean isInverted) {
+		this.results = results;
+		this.decodeMillis = decodeMillis;
+		this.isPreprocessed = isPreprocessed;
+		this.effortLevel = effortLevel;
+		this.isInverted = isInverted;
+	}
+
+	/**
+	 * @return 识别出的码，至少有一个，单码模式下只有一个
+	 */
+	public Result[] getResults() {
+		return results;
+	}
+
+	public Result getResult() {
+		return results[0];
+	}
+
+	public long getDecodeMillis() {
+		return decodeMillis;
+	}
+
+	/**
+	 * @return 是否经过预处理之后才解出
+	 */
+	public boolean isPreprocessed() {
+		return isPreprocessed;
+	}
+
+	/**
+	 * @return 解出时使用的解码级别，参见{@link EffortPolicy}
+	 */
+	public int getEffortLevel() {
+		return effortLevel;
+	}
+
+	/**
+	 * @return 是否按反色图像解出
+	 */
+	public boolean isInverted() {
+		return isInverted;
+	}
+}
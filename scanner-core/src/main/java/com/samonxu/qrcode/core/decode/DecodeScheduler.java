@@ -0,0 +1,174 @@
+package com.samonxu.qrcode.core.decode;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.ResultPointCallback;
+import com.samonxu.qrcode.core.decode.preprocess.AdaptivePreprocessor;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于线程池的解码调度器。每个解码线程持有自己的{@link FrameDecoder}，帧按提交顺序取出解码，
+ * 结果通过{@link DecodeCallback}在解码线程中回调。
+ */
+public class DecodeScheduler<S extends LuminanceSource> {
+
+	private static class Worker {
+		final FrameDecoder decoder;
+		final AdaptivePreprocessor preprocessor = new AdaptivePreprocessor();
+
+		Worker(ResultPointCallback pointCallback) {
+			decoder = new FrameDecoder(pointCallback);
+		}
+	}
+
+	private final DecodeCallback<S> callback;
+	private final ThreadPoolExecutor executor;
+	private final ThreadLocal<Worker> workers;
+	// Shared by all workers so the adaptive reader order follows the whole session
+	private volatile ReaderStats readerStats = new ReaderStats();
+	private volatile boolean isMultiDecode = false;
+	private volatile boolean isPreprocessEnabled = false;
+	private volatile EffortPolicy effortPolicy;
+	private volatile DecodeProfile decodeProfile;
+
+	/**
+	 * @param workerCount
+	 *                  解码线程数
+	 * @param pointCallback
+	 *                  可能点回调，会在多个解码线程中调用，可以为null
+	 */
+	public DecodeScheduler(int workerCount, final ResultPointCallback pointCallback, DecodeCallback<S> callback) {
+		this.callback = callback;
+		workers = new ThreadLocal<Worker>() {
+			@Override
+			protected Worker initialValue() {
+				return new Worker(pointCallback);
+			}
+		};
+		final AtomicInteger threadCount = new AtomicInteger();
+		executor = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "DecodeWorker-" + threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+
+	/**
+	 * 开启多码模式，对之后取出的帧生效
+	 */
+	public void setMultiDecode(boolean multiDecode) {
+		isMultiDecode = multiDecode;
+	}
+
+	/**
+	 * 开启后连续解码失败的帧会交替经过预处理再解码，参见{@link AdaptivePreprocessor}
+	 */
+	public void setPreprocessEnabled(boolean preprocessEnabled) {
+		isPreprocessEnabled = preprocessEnabled;
+	}
+
+	/**
+	 * 设置逐级解码策略，每个解码线程各自记录当前级别，传入null时每帧都识别全部格式且不限时
+	 */
+	public void setEffortPolicy(EffortPolicy policy) {
+		effortPolicy = policy;
+	}
+
+	/**
+	 * 设置识别的格式，对之后取出的帧生效，传入null时识别全部格式
+	 */
+	public void setDecodeProfile(DecodeProfile profile) {
+		decodeProfile = profile;
+	}
+
+	/**
+	 * 设置所有解码线程共用的reader统计，对之后取出的帧生效，传入多次扫描共用的实例时自适应顺序可以跨扫描保留
+	 */
+	public void setReaderStats(ReaderStats stats) {
+		readerStats = stats;
+	}
+
+	/**
+	 * @return 所有解码线程共用的reader统计
+	 */
+	public ReaderStats getReaderStats() {
+		return readerStats;
+	}
+
+	/**
+	 * 调整解码线程数，减少时多余的线程在空闲后结束，可以在任意线程调用
+	 */
+	public synchronized void setWorkerCount(int workerCount) {
+		// The core size may never exceed the maximum, so grow the maximum first and shrink the core size first
+		if (workerCount > executor.getMaximumPoolSize()) {
+			executor.setMaximumPoolSize(workerCount);
+			executor.setCorePoolSize(workerCount);
+		} else {
+			executor.setCorePoolSize(workerCount);
+			executor.setMaximumPoolSize(workerCount);
+		}
+	}
+
+	public int getWorkerCount() {
+		return executor.getCorePoolSize();
+	}
+
+	/**
+	 * 可以在任意线程调用
+	 *
+	 * @return 是否接受了这一帧，已经{@link #shutdown()}时返回false，不会回调
+	 */
+	public boolean submit(final S source) {
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					decode(source);
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			// shutdown() may run on another thread at any moment, so checking isShutdown() first is not enough
+			return false;
+		}
+	}
+
+	/**
+	 * @return 已提交但还没开始解码的帧数
+	 */
+	public int getPendingCount() {
+		return executor.getQueue().size();
+	}
+
+	/**
+	 * 不再接受新的帧，正在解码的帧仍会回调
+	 */
+	public void shutdown() {
+		executor.shutdown();
+		executor.getQueue().clear();
+	}
+
+	private void decode(S source) {
+		Worker worker = workers.get();
+		worker.decoder.setMultiDecode(isMultiDecode);
+		worker.decoder.setPreprocessor(isPreprocessEnabled ? worker.preprocessor : null);
+		worker.decoder.setEffortPolicy(effortPolicy);
+		worker.decoder.setDecodeProfile(decodeProfile);
+		worker.decoder.setReaderStats(readerStats);
+		DecodeResult result = worker.decoder.decode(source);
+		if (result == null) {
+			callback.onDecodeFailed(source);
+		} else {
+			callback.onDecodeSuccess(source, result);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package com.samonxu.qrcode.core.decode;
+
+/**
+ * 记录当前的解码级别：快速级别连续失败达到次数后，只用一个更高级别尝试一帧，然后回到快速级别。
+ * 每次升级轮流使用更高的级别，没有码的画面中大多数帧仍然只做快速解码。解码成功后重新计数。
+ * 只在解码线程中使用。
+ */
+class EffortLadder {
+	private final EffortPolicy policy;
+	private int level = EffortPolicy.LEVEL_FAST;
+	private int failures = 0;
+	// The level the next escalated frame uses, rotates through every level above fast
+	private int nextEscalatedLevel = EffortPolicy.LEVEL_FAST + 1;
+
+	EffortLadder(EffortPolicy policy) {
+		this.policy = policy;
+	}
+
+	EffortPolicy getPolicy() {
+		return policy;
+	}
+
+	int getLevel() {
+		return level;
+	}
+
+	void onDecodeFinished(boolean success) {
+		if (success) {
+			level = EffortPolicy.LEVEL_FAST;
+			failures = 0;
+			nextEscalatedLevel = EffortPolicy.LEVEL_FAST + 1;
+			return;
+		}
+		if (level != EffortPolicy.LEVEL_FAST) {
+			// One escalated attempt only
+			level = EffortPolicy.LEVEL_FAST;
+			return;
+		}
+		if (++failures >= policy.getFailuresPerLevel()) {
+			failures = 0;
+			level = nextEscalatedLevel;
+			nextEscalatedLevel = nextEscalatedLevel + 1 < EffortPolicy.LEVEL_COUNT ? nextEscalatedLevel + 1
+					: EffortPolicy.LEVEL_FAST + 1;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package com.samonxu.qrcode.core.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 逐级提高解码力度的策略。大多数帧只做限定格式的快速解码，连续失败后才用一帧轮流尝试全部格式、
+ * TRY_HARDER和PURE_BARCODE，之后回到快速解码，每帧的解码时间不超过预算。
+ */
+public class EffortPolicy {
+	/** 只识别快速格式 */
+	public static final int LEVEL_FAST = 0;
+	/** 识别全部格式，设置了{@link DecodeProfile}时为profile中的全部格式 */
+	public static final int LEVEL_ALL_FORMATS = 1;
+	/** 全部格式并开启TRY_HARDER */
+	public static final int LEVEL_TRY_HARDER = 2;
+	/** 在TRY_HARDER基础上按纯码图像解码 */
+	public static final int LEVEL_PURE_BARCODE = 3;
+	public static final int LEVEL_COUNT = 4;
+
+	private static final String[] LEVEL_NAMES = { "fast", "all_formats", "try_harder", "pure_barcode" };
+
+	private static final int DEFAULT_FAILURES_PER_LEVEL = 3;
+	private static final long DEFAULT_BUDGET_MILLIS = 150L;
+	private static final long STILL_IMAGE_BUDGET_MILLIS = 2000L;
+
+	private final Set<BarcodeFormat> fastFormats;
+	private final int failuresPerLevel;
+	private final long budgetMillis;
+
+	/**
+	 * 适合相机预览的默认策略：快速级别只识别二维码，快速级别连续失败3帧后用更高级别尝试一帧，每帧预算150ms
+	 */
+	public EffortPolicy() {
+		this(EnumSet.of(BarcodeFormat.QR_CODE), DEFAULT_FAILURES_PER_LEVEL, DEFAULT_BUDGET_MILLIS);
+	}
+
+	/**
+	 * @param fastFormats
+	 *                  快速级别识别的格式
+	 * @param failuresPerLevel
+	 *                  快速级别连续失败多少帧后用更高级别尝试一帧
+	 * @param budgetMillis
+	 *                  每帧的解码时间预算，0表示不限制
+	 */
+	public EffortPolicy(Collection<BarcodeFormat> fastFormats, int failuresPerLevel, long budgetMillis) {
+		if (fastFormats.isEmpty()) {
+			throw new IllegalArgumentException("No fast formats");
+		}
+		if (failuresPerLevel < 1 || budgetMillis < 0) {
+			throw new IllegalArgumentException("Invalid failuresPerLevel or budgetMillis");
+		}
+		this.fastFormats = EnumSet.copyOf(fastFormats);
+		this.failuresPerLevel = failuresPerLevel;
+		this.budgetMillis = budgetMillis;
+	}
+
+	/**
+	 * 相册图片这类只有一帧的图像在一次解码中依次尝试所有级别，预算覆盖所有级别
+	 */
+	public static EffortPolicy createForStillImage() {
+		return new EffortPolicy(EnumSet.of(BarcodeFormat.QR_CODE), 1, STILL_IMAGE_BUDGET_MILLIS);
+	}
+
+	public Set<BarcodeFormat> getFastFormats() {
+		return EnumSet.copyOf(fastFormats);
+	}
+
+	public int getFailuresPerLevel() {
+		return failuresPerLevel;
+	}
+
+	public long getBudgetMillis() {
+		return budgetMillis;
+	}
+
+	public static String getLevelName(int level) {
+		return LEVEL_NAMES[level];
+	}
+
+	/**
+	 * 在基础hints上加入指定级别的hints
+	 *
+	 * @param profileFormats
+	 *                  解码profile中的格式，所有级别都只识别这些格式，null表示不限制
+	 */
+	static Hashtable<DecodeHintType, Object> createHints(Map<DecodeHintType, Object> baseHints, int level,
+			Set<BarcodeFormat> fastFormats, Set<BarcodeFormat> profileFormats) {
+		Hashtable<DecodeHintType, Object> hints = new Hashtable<DecodeHintType, Object>(baseHints);
+		if (profileFormats != null) {
+			hints.put(DecodeHintType.POSSIBLE_FORMATS, EnumSet.copyOf(profileFormats));
+		}
+		switch (level) {
+		case LEVEL_FAST:
+			EnumSet<BarcodeFormat> formats = EnumSet.copyOf(fastFormats);
+			if (profileFormats != null) {
+				formats.retainAll(profileFormats);
+			}
+			// A profile without any fast format, such as retail 1D, decodes its own formats at this level
+			if (!formats.isEmpty()) {
+				hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+			}
+			break;
+		case LEVEL_ALL_FORMATS:
+			break;
+		case LEVEL_PURE_BARCODE:
+			// Pure barcode mode still tries harder
+			hints.put(DecodeHintType.PURE_BARCODE, Boolean.TRUE);
+			hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+			break;
+		case LEVEL_TRY_HARDER:
+			hints.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown level: " + level);
+		}
+		return hints;
+	}
+}
@@ -0,0 +1,375 @@
+package com.samonxu.qrcode.core.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.ResultPointCallback;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+import com.samonxu.qrcode.core.decode.preprocess.AdaptivePreprocessor;
+import com.samonxu.qrcode.core.source.BaseLuminanceSource;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Hashtable;
+import java.util.Set;
+
+/**
+ * 同步解码一帧图像，reader在多帧之间复用，同一时间只能在一个线程中使用
+ */
+public class FrameDecoder {
+	private static final int PREWARM_SIZE = 64;
+
+	/**
+	 * 一个解码级别使用的hints和reader
+	 */
+	private static class LevelReaders {
+		final Hashtable<DecodeHintType, Object> hints;
+		final ReaderChain singleReader;
+		// Formats other than QR code for multi decode, null if there are none
+		final ReaderChain otherReader;
+		final boolean isQRCodeIncluded;
+
+		LevelReaders(Hashtable<DecodeHintType, Object> hints) {
+			this.hints = hints;
+			singleReader = new ReaderChain(hints);
+			@SuppressWarnings("unchecked")
+			Collection<BarcodeFormat> formats = (Collection<BarcodeFormat>) hints.get(DecodeHintType.POSSIBLE_FORMATS);
+			EnumSet<BarcodeFormat> otherFormats = formats == null ? EnumSet.allOf(BarcodeFormat.class)
+					: EnumSet.copyOf(formats);
+			isQRCodeIncluded = otherFormats.remove(BarcodeFormat.QR_CODE);
+			if (otherFormats.isEmpty()) {
+				otherReader = null;
+			} else {
+				Hashtable<DecodeHintType, Object> otherHints = new Hashtable<DecodeHintType, Object>(hints);
+				otherHints.put(DecodeHintType.POSSIBLE_FORMATS, otherFormats);
+				otherReader = new ReaderChain(otherHints);
+			}
+		}
+	}
+
+	/**
+	 * 超出时间预算时从zxing内部抛出，中断本次解码
+	 */
+	private static class BudgetExceededException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			// Thrown on every overrun, the stack trace is never needed
+			return this;
+		}
+	}
+
+	private static final BudgetExceededException BUDGET_EXCEEDED = new BudgetExceededException();
+
+	/**
+	 * 每次读取亮度数据时检查时间预算。二值化时逐行读取整幅图像，
+	 * 一维码每扫描一行读取一次，所以TRY_HARDER下逐行扫描的一维码也能及时中断。
+	 */
+	private class BudgetedLuminanceSource extends LuminanceSource {
+		private final LuminanceSource source;
+
+		BudgetedLuminanceSource(LuminanceSource source) {
+			super(source.getWidth(), source.getHeight());
+			this.source = source;
+		}
+
+		@Override
+		public byte[] getRow(int y, byte[] row) {
+			checkBudget();
+			return source.getRow(y, row);
+		}
+
+		@Override
+		public byte[] getMatrix() {
+			checkBudget();
+			return source.getMatrix();
+		}
+	}
+
+	private final ResultPointCallback pointCallback;
+	private final Hashtable<DecodeHintType, Object> baseHints = new Hashtable<DecodeHintType, Object>(3);
+	private final QRCodeMultiReader qrCodeMultiReader = new QRCodeMultiReader();
+	private LevelReaders defaultReaders;
+	private DecodeProfile profile;
+	private ReaderStats readerStats;
+	private final ReaderStats.FrameLog frameLog = new ReaderStats.FrameLog();
+	// Kept across frames, the crop size does not change within a session
+	private ReusableBinarizer binarizer;
+	private LevelReaders[] levelReaders;
+	private EffortLadder ladder;
+	private long deadlineNanos = Long.MAX_VALUE;
+	private int budgetExceededCount = 0;
+	private boolean isMultiDecode = false;
+	private AdaptivePreprocessor preprocessor;
+
+	public FrameDecoder(ResultPointCallback callback) {
+		this.pointCallback = callback;
+		baseHints.put(DecodeHintType.CHARACTER_SET, "UTF-8");
+		// Also used to check the time budget while finder patterns are being found
+		baseHints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, new ResultPointCallback() {
+			@Override
+			public void foundPossibleResultPoint(ResultPoint point) {
+				checkBudget();
+				if (pointCallback != null) {
+					pointCallback.foundPossibleResultPoint(point);
+				}
+			}
+		});
+		createReaders();
+	}
+
+	public void setMultiDecode(boolean multiDecode) {
+		isMultiDecode = multiDecode;
+	}
+
+	public boolean isMultiDecode() {
+		return isMultiDecode;
+	}
+
+	/**
+	 * 设置后，连续解码失败的帧会交替经过预处理再解码，传入null关闭预处理
+	 */
+	public void setPreprocessor(AdaptivePreprocessor preprocessor) {
+		this.preprocessor = preprocessor;
+	}
+
+	/**
+	 * 设置后按策略逐级提高解码力度并限制每帧的解码时间，传入null时每帧都识别全部格式且不限时
+	 */
+	public void setEffortPolicy(EffortPolicy policy) {
+		if (policy == null) {
+			ladder = null;
+			levelReaders = null;
+			return;
+		}
+		if (ladder != null && ladder.getPolicy() == policy) {
+			return;
+		}
+		ladder = new EffortLadder(policy);
+		createLevelReaders();
+	}
+
+	/**
+	 * 设置后每个级别都只识别profile中的格式，传入null时识别全部格式
+	 */
+	public void setDecodeProfile(DecodeProfile profile) {
+		if (this.profile == profile) {
+			return;
+		}
+		this.profile = profile;
+		createReaders();
+		if (ladder != null) {
+			createLevelReaders();
+		}
+	}
+
+	public DecodeProfile getDecodeProfile() {
+		return profile;
+	}
+
+	/**
+	 * 设置后每帧的reader耗时和识别结果计入stats，自适应profile按其中的命中分数排列reader。
+	 * 多个FrameDecoder可以共用一个stats。
+	 */
+	public void setReaderStats(ReaderStats stats) {
+		readerStats = stats;
+	}
+
+	private void createReaders() {
+		defaultReaders = new LevelReaders(EffortPolicy.createHints(baseHints, EffortPolicy.LEVEL_ALL_FORMATS, null,
+				getProfileFormats()));
+	}
+
+	private void createLevelReaders() {
+		EffortPolicy policy = ladder.getPolicy();
+		levelReaders = new LevelReaders[EffortPolicy.LEVEL_COUNT];
+		for (int level = 0; level < EffortPolicy.LEVEL_COUNT; level++) {
+			levelReaders[level] = new LevelReaders(EffortPolicy.createHints(baseHints, level, policy.getFastFormats(),
+					getProfileFormats()));
+		}
+	}
+
+	private Set<BarcodeFormat> getProfileFormats() {
+		return profile == null ? null : profile.getFormats();
+	}
+
+	/**
+	 * @return 下一帧将使用的解码级别
+	 */
+	public int getEffortLevel() {
+		return ladder == null ? EffortPolicy.LEVEL_ALL_FORMATS : ladder.getLevel();
+	}
+
+	/**
+	 * @return 因超出时间预算而中断的次数
+	 */
+	public int getBudgetExceededCount() {
+		return budgetExceededCount;
+	}
+
+	/**
+	 * 加载解码相关的类并对空白图像空跑一次单码和多码解码，减少第一帧的解码耗时
+	 */
+	public static void prewarm() {
+		byte[] blank = new byte[PREWARM_SIZE * PREWARM_SIZE];
+		PlanarYUVLuminanceSource source = new PlanarYUVLuminanceSource(blank, PREWARM_SIZE, PREWARM_SIZE, 0, 0,
+				PREWARM_SIZE, PREWARM_SIZE, false);
+		FrameDecoder frameDecoder = new FrameDecoder(null);
+		frameDecoder.decode(source);
+		frameDecoder.setMultiDecode(true);
+		frameDecoder.decode(source);
+	}
+
+	/**
+	 * 按当前级别解码一帧，结果计入逐级策略
+	 *
+	 * @return 解码结果，没有识别出或超出时间预算时返回null
+	 */
+	public DecodeResult decode(LuminanceSource source) {
+		long start = System.currentTimeMillis();
+		boolean inverted = source instanceof BaseLuminanceSource && ((BaseLuminanceSource) source).isInverted();
+		boolean preprocessed = preprocessor != null && preprocessor.shouldPreprocess();
+		if (preprocessed) {
+			source = preprocessor.process(source);
+		}
+		int level = getEffortLevel();
+		startBudget();
+		Result[] results;
+		try {
+			results = decodeAtLevel(source, level);
+		} finally {
+			deadlineNanos = Long.MAX_VALUE;
+		}
+		flushFrameLog(results);
+		if (preprocessor != null) {
+			preprocessor.onDecodeFinished(preprocessed, results != null);
+		}
+		if (ladder != null) {
+			ladder.onDecodeFinished(results != null);
+		}
+		if (results == null) {
+			return null;
+		}
+		return new DecodeResult(results, System.currentTimeMillis() - start, preprocessed, level, inverted);
+	}
+
+	/**
+	 * 在一次调用中从快速级别开始依次尝试所有级别，原图都解不出时再对反色图像尝试所有级别，
+	 * 时间预算覆盖所有尝试，适合相册图片这类只有一帧的图像。
+	 * 没有设置策略时使用{@link EffortPolicy#createForStillImage()}。
+	 *
+	 * @return 解码结果，没有识别出或超出时间预算时返回null
+	 */
+	public DecodeResult decodeAllLevels(LuminanceSource source) {
+		if (ladder == null) {
+			setEffortPolicy(EffortPolicy.createForStillImage());
+		}
+		long start = System.currentTimeMillis();
+		startBudget();
+		Result[] results = null;
+		try {
+			LuminanceSource polaritySource = source;
+			for (int polarity = 0; polarity < 2; polarity++) {
+				if (polarity == 1) {
+					polaritySource = source.invert();
+				}
+				for (int level = 0; level < EffortPolicy.LEVEL_COUNT; level++) {
+					results = decodeAtLevel(polaritySource, level);
+					if (results != null) {
+						return new DecodeResult(results, System.currentTimeMillis() - start, false, level,
+								polarity == 1);
+					}
+					if (System.nanoTime() >= deadlineNanos) {
+						return null;
+					}
+				}
+			}
+		} finally {
+			deadlineNanos = Long.MAX_VALUE;
+			flushFrameLog(results);
+		}
+		return null;
+	}
+
+	/**
+	 * 一帧的所有尝试结束后计入统计
+	 */
+	private void flushFrameLog(Result[] results) {
+		if (readerStats != null) {
+			readerStats.onFrameFinished(frameLog, results);
+		} else {
+			frameLog.clear();
+		}
+	}
+
+	private void startBudget() {
+		long budgetMillis = ladder == null ? 0 : ladder.getPolicy().getBudgetMillis();
+		deadlineNanos = budgetMillis > 0 ? System.nanoTime() + budgetMillis * 1000000L : Long.MAX_VALUE;
+	}
+
+	private void checkBudget() {
+		if (deadlineNanos != Long.MAX_VALUE && System.nanoTime() > deadlineNanos) {
+			throw BUDGET_EXCEEDED;
+		}
+	}
+
+	private Result[] decodeAtLevel(LuminanceSource source, int level) {
+		LevelReaders readers = levelReaders == null ? defaultReaders : levelReaders[level];
+		if (deadlineNanos != Long.MAX_VALUE) {
+			source = new BudgetedLuminanceSource(source);
+		}
+		if (binarizer == null || !binarizer.isSizeOf(source)) {
+			binarizer = new ReusableBinarizer(source.getWidth(), source.getHeight());
+		}
+		binarizer.setSource(source);
+		try {
+			BinaryBitmap bitmap = new BinaryBitmap(binarizer);
+			return isMultiDecode ? decodeMultiple(readers, bitmap) : decodeSingle(readers.singleReader, bitmap);
+		} catch (BudgetExceededException e) {
+			budgetExceededCount++;
+			return null;
+		} finally {
+			binarizer.release();
+		}
+	}
+
+	private Result[] decodeSingle(ReaderChain reader, BinaryBitmap bitmap) {
+		ReaderStats adaptiveStats = profile != null && profile.isAdaptive() ? readerStats : null;
+		try {
+			return new Result[] { reader.decode(bitmap, frameLog, adaptiveStats) };
+		} catch (NotFoundException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 先用QRCodeMultiReader一次找出所有二维码，找不到再用其余格式解单个码。
+	 * 两次解码共用同一个BinaryBitmap，二值化只做一次，且第二次不再重复QR检测，
+	 * 所以耗时与单码模式相当。
+	 */
+	private Result[] decodeMultiple(LevelReaders readers, BinaryBitmap bitmap) {
+		if (readers.isQRCodeIncluded) {
+			long start = System.nanoTime();
+			boolean hit = false;
+			try {
+				Result[] results = qrCodeMultiReader.decodeMultiple(bitmap, readers.hints);
+				if (results.length > 0) {
+					hit = true;
+					return results;
+				}
+			} catch (ReaderException re) {
+			} finally {
+				qrCodeMultiReader.reset();
+				frameLog.add(ReaderStats.QR_CODE_MULTI, System.nanoTime() - start, hit);
+			}
+		}
+		return readers.otherReader == null ? null : decodeSingle(readers.otherReader, bitmap);
+	}
+}
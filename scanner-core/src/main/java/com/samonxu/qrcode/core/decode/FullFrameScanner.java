@@ -0,0 +1,229 @@
+package com.samonxu.qrcode.core.decode;
+
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.samonxu.qrcode.core.CropRect;
+import com.samonxu.qrcode.core.Size;
+import com.samonxu.qrcode.core.source.PlanarYUVLuminanceSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 扫描框之外的后备扫描：偶尔把整帧缩小一半后解码，找出在画面中、但不在扫描框内的码。
+ * <p>
+ * 在单独的最低优先级线程中运行，上一帧还没解完或距离上次不到最小间隔时，新的帧直接丢弃，
+ * 扫描框的帧不会因此排队或等待。码中心落在扫描框内的结果会被忽略，由扫描框的解码负责。
+ * </p>
+ * 结果的坐标换算为相对扫描框的原图坐标，与扫描框解码的结果一致，可以一起去重。
+ */
+public class FullFrameScanner {
+
+	public interface Callback {
+		/**
+		 * 在后备扫描线程中回调
+		 *
+		 * @param codeSource
+		 *                  原图中码所在的区域，用于生成缩略图
+		 */
+		void onCodeOutsideWindow(PlanarYUVLuminanceSource codeSource, DecodeResult result);
+	}
+
+	// downsample() averages 2x2 blocks
+	private static final int SCALE = 2;
+	// Around the result points, which are finder pattern centers or the ends of a 1D code
+	private static final float CODE_PADDING = 0.4f;
+	private static final int MIN_CODE_PADDING = 16;
+
+	private final Callback callback;
+	private final long minIntervalMillis;
+	private final ThreadPoolExecutor executor;
+	private final AtomicBoolean isBusy = new AtomicBoolean(false);
+	private final FrameDecoder decoder = new FrameDecoder(null);
+	private volatile boolean isMultiDecode = false;
+	private volatile DecodeProfile decodeProfile;
+	private long lastOfferMillis = Long.MIN_VALUE;
+	// Only touched on the scanner thread
+	private byte[] downsampled;
+
+	private int attemptCount = 0;
+	private int hitCount = 0;
+	private int insideWindowCount = 0;
+
+	/**
+	 * @param minIntervalMillis
+	 *                  两次后备扫描之间的最小间隔
+	 */
+	public FullFrameScanner(long minIntervalMillis, Callback callback) {
+		this.callback = callback;
+		this.minIntervalMillis = minIntervalMillis;
+		decoder.setEffortPolicy(new EffortPolicy());
+		executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "FullFrameScanner");
+						thread.setDaemon(true);
+						// Whatever cycles are left after the scan window decoding
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					}
+				});
+	}
+
+	public void setMultiDecode(boolean multiDecode) {
+		isMultiDecode = multiDecode;
+	}
+
+	/**
+	 * 设置识别的格式，对之后的扫描生效，传入null时识别全部格式
+	 */
+	public void setDecodeProfile(DecodeProfile profile) {
+		decodeProfile = profile;
+	}
+
+	/**
+	 * 可以在任意线程调用，之后不能再修改yuvData
+	 *
+	 * @param window
+	 *                  扫描框对应的图像区域
+	 * @return 是否接受了这一帧，正在扫描上一帧或间隔太短时返回false
+	 */
+	public boolean offer(final byte[] yuvData, final Size dataSize, final CropRect window, long nowMillis) {
+		synchronized (this) {
+			boolean isTooSoon = lastOfferMillis != Long.MIN_VALUE && nowMillis - lastOfferMillis < minIntervalMillis;
+			if (executor.isShutdown() || isTooSoon || !isBusy.compareAndSet(false, true)) {
+				return false;
+			}
+			lastOfferMillis = nowMillis;
+			attemptCount++;
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					scan(yuvData, dataSize, window);
+				} finally {
+					isBusy.set(false);
+				}
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * 不再接受新的帧，正在扫描的帧仍可能回调
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * @return 后备扫描的次数
+	 */
+	public synchronized int getAttemptCount() {
+		return attemptCount;
+	}
+
+	/**
+	 * @return 在扫描框外找到码的次数
+	 */
+	public synchronized int getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return 找到的码都在扫描框内而被忽略的次数
+	 */
+	public synchronized int getInsideWindowCount() {
+		return insideWindowCount;
+	}
+
+	private void scan(byte[] yuvData, Size dataSize, CropRect window) {
+		int width = dataSize.width / SCALE;
+		int height = dataSize.height / SCALE;
+		if (downsampled == null || downsampled.length != width * height) {
+			downsampled = new byte[width * height];
+		}
+		downsample(yuvData, dataSize.width, downsampled, width, height);
+		Size size = new Size(width, height);
+		decoder.setMultiDecode(isMultiDecode);
+		decoder.setDecodeProfile(decodeProfile);
+		DecodeResult decoded = decoder.decode(new PlanarYUVLuminanceSource(downsampled, size, new CropRect(0, 0,
+				width, height)));
+		if (decoded == null) {
+			return;
+		}
+		List<Result> outside = new ArrayList<Result>();
+		float left = Float.MAX_VALUE, top = Float.MAX_VALUE;
+		float right = -Float.MAX_VALUE, bottom = -Float.MAX_VALUE;
+		for (Result result : decoded.getResults()) {
+			ResultPoint[] points = result.getResultPoints();
+			if (points == null || points.length == 0) {
+				continue;
+			}
+			float centerX = 0, centerY = 0;
+			float codeLeft = Float.MAX_VALUE, codeTop = Float.MAX_VALUE;
+			float codeRight = -Float.MAX_VALUE, codeBottom = -Float.MAX_VALUE;
+			ResultPoint[] windowPoints = new ResultPoint[points.length];
+			for (int i = 0; i < points.length; i++) {
+				float x = points[i].getX() * SCALE;
+				float y = points[i].getY() * SCALE;
+				centerX += x / points.length;
+				centerY += y / points.length;
+				codeLeft = Math.min(codeLeft, x);
+				codeTop = Math.min(codeTop, y);
+				codeRight = Math.max(codeRight, x);
+				codeBottom = Math.max(codeBottom, y);
+				windowPoints[i] = new ResultPoint(x - window.left, y - window.top);
+			}
+			if (centerX >= window.left && centerX < window.right && centerY >= window.top && centerY < window.bottom) {
+				continue;
+			}
+			left = Math.min(left, codeLeft);
+			top = Math.min(top, codeTop);
+			right = Math.max(right, codeRight);
+			bottom = Math.max(bottom, codeBottom);
+			Result moved = new Result(result.getText(), result.getRawBytes(), windowPoints, result.getBarcodeFormat(),
+					result.getTimestamp());
+			moved.putAllMetadata(result.getResultMetadata());
+			outside.add(moved);
+		}
+		if (outside.isEmpty()) {
+			synchronized (this) {
+				insideWindowCount++;
+			}
+			return;
+		}
+		synchronized (this) {
+			hitCount++;
+		}
+		float padding = Math.max(MIN_CODE_PADDING, Math.max(right - left, bottom - top) * CODE_PADDING);
+		CropRect codeRect = new CropRect(Math.max(0, (int) (left - padding)), Math.max(0, (int) (top - padding)),
+				Math.min(dataSize.width, (int) (right + padding)), Math.min(dataSize.height, (int) (bottom + padding)));
+		callback.onCodeOutsideWindow(new PlanarYUVLuminanceSource(yuvData, dataSize, codeRect), new DecodeResult(
+				outside.toArray(new Result[outside.size()]), decoded.getDecodeMillis(), decoded.isPreprocessed(),
+				decoded.getEffortLevel(), decoded.isInverted()));
+	}
+
+	/**
+	 * 每2x2个像素取平均，缩小时顺便平滑了噪声
+	 */
+	private static void downsample(byte[] src, int srcWidth, byte[] dest, int width, int height) {
+		for (int y = 0; y < height; y++) {
+			int row0 = y * SCALE * srcWidth;
+			int row1 = row0 + srcWidth;
+			int offset = y * width;
+			for (int x = 0, srcX = 0; x < width; x++, srcX += SCALE) {
+				int sum = (src[row0 + srcX] & 0xFF) + (src[row0 + srcX + 1] & 0xFF) + (src[row1 + srcX] & 0xFF)
+						+ (src[row1 + srcX + 1] & 0xFF);
+				dest[offset + x] = (byte) (sum >> 2);
+			}
+		}
+	}
+}
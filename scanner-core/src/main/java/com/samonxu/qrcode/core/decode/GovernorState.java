@@ -0,0 +1,48 @@
+package com.samonxu.qrcode.core.decode;
+
+/**
+ * {@link ScanGovernor}的状态快照，用于监控
+ */
+public class GovernorState {
+	public final ScanGovernor.Mode mode;
+	/** 进入当前模式的原因 */
+	public final String reason;
+	public final long frameIntervalMs;
+	public final int workerCount;
+	public final int maxPreviewFps;
+	/** 最近解码的平滑成功率，0到1 */
+	public final float successRate;
+	public final long decodeCount;
+	/** 扫描区域每块亮度变化的平滑值 */
+	public final float sceneActivity;
+	public final int batteryPercent;
+	public final boolean isCharging;
+	/** 电池温度，单位摄氏度，未知时为NaN */
+	public final float temperature;
+	public final int modeChangeCount;
+
+	public GovernorState(ScanGovernor.Mode mode, String reason, long frameIntervalMs, int workerCount,
+			int maxPreviewFps, float successRate, long decodeCount, float sceneActivity, int batteryPercent,
+			boolean isCharging, float temperature, int modeChangeCount) {
+		this.mode = mode;
+		this.reason = reason;
+		this.frameIntervalMs = frameIntervalMs;
+		this.workerCount = workerCount;
+		this.maxPreviewFps = maxPreviewFps;
+		this.successRate = successRate;
+		this.decodeCount = decodeCount;
+		this.sceneActivity = sceneActivity;
+		this.batteryPercent = batteryPercent;
+		this.isCharging = isCharging;
+		this.temperature = temperature;
+		this.modeChangeCount = modeChangeCount;
+	}
+
+	@Override
+	public String toString() {
+		return "mode=" + mode + " (" + reason + "), interval=" + frameIntervalMs + "ms, workers=" + workerCount
+				+ ", maxFps=" + maxPreviewFps + ", successRate=" + successRate + ", decodes=" + decodeCount
+				+ ", activity=" + sceneActivity + ", battery=" + batteryPercent + "%" + (isCharging ? " charging" : "")
+				+ ", temperature=" + temperature + ", modeChanges=" + modeChangeCount;
+	}
+}
@@ -0,0 +1,86 @@
+package com.samonxu.qrcode.core.decode;
+
+/**
+ * 决定每一帧按原图还是反色解码，用于识别深色背景上的浅色码（如金属上的激光刻码），每帧只解码一次。
+ * <p>
+ * 绝大多数码是深色的，所以还没有反色解出过时偏向原图，反色每隔{@link #OFF_POLARITY_INTERVAL}帧才尝试一次；
+ * 反色解出后改为优先反色，原图每隔{@link #OFF_POLARITY_INTERVAL}帧尝试一次。优先反色时原图解出后改为优先原图，
+ * 连续{@link #MISSES_BEFORE_SEARCHING}帧没有解出则回到偏向原图，一个反色的码不会一直拖慢之后的扫描。
+ * </p>
+ * 可以在多个线程中调用，可以在多次扫描之间共用。
+ */
+public class InversionScheduler {
+	/** 非优先极性的尝试间隔帧数 */
+	public static final int OFF_POLARITY_INTERVAL = 8;
+	/** 优先反色时连续多少帧没有解出后回到偏向原图 */
+	public static final int MISSES_BEFORE_SEARCHING = 3 * OFF_POLARITY_INTERVAL;
+
+	private enum State {
+		SEARCHING, NORMAL_PREFERRED, INVERTED_PREFERRED
+	}
+
+	private State state = State.SEARCHING;
+	private long frameCount = 0;
+	private int invertedSuccessCount = 0;
+	private int missCount = 0;
+
+	/**
+	 * 每取一帧调用一次
+	 *
+	 * @return 这一帧是否应该反色解码
+	 */
+	public synchronized boolean nextFrameInverted() {
+		long frame = frameCount++;
+		return state == State.INVERTED_PREFERRED ? !isOffPolarityFrame(frame) : isOffPolarityFrame(frame);
+	}
+
+	/**
+	 * 每个间隔中的最后一帧，隔一个间隔提前一帧。
+	 * 自适应预处理逐帧交替，间隔是偶数，固定的位置只会遇到一种预处理方式。
+	 */
+	private static boolean isOffPolarityFrame(long frame) {
+		long slot = OFF_POLARITY_INTERVAL - 1 - (frame / OFF_POLARITY_INTERVAL) % 2;
+		return frame % OFF_POLARITY_INTERVAL == slot;
+	}
+
+	/**
+	 * 每帧解码结束后调用
+	 */
+	public synchronized void onDecodeFinished(boolean inverted, boolean success) {
+		if (!success) {
+			// The inverted label has most likely left the view
+			if (state == State.INVERTED_PREFERRED && ++missCount >= MISSES_BEFORE_SEARCHING) {
+				state = State.SEARCHING;
+				missCount = 0;
+			}
+			return;
+		}
+		missCount = 0;
+		if (inverted) {
+			invertedSuccessCount++;
+			state = State.INVERTED_PREFERRED;
+		} else {
+			state = State.NORMAL_PREFERRED;
+		}
+	}
+
+	public synchronized boolean isInvertedPreferred() {
+		return state == State.INVERTED_PREFERRED;
+	}
+
+	/**
+	 * @return 反色解出的帧数
+	 */
+	public synchronized int getInvertedSuccessCount() {
+		return invertedSuccessCount;
+	}
+
+	/**
+	 * 回到偏向原图的初始状态
+	 */
+	public synchronized void reset() {
+		state = State.SEARCHING;
+		frameCount = 0;
+		missCount = 0;
+	}
+}
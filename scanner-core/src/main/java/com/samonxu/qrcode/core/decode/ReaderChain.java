@@ -0,0 +1,142 @@
+package com.samonxu.qrcode.core.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Reader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.aztec.AztecReader;
+import com.google.zxing.datamatrix.DataMatrixReader;
+import com.google.zxing.maxicode.MaxiCodeReader;
+import com.google.zxing.oned.MultiFormatOneDReader;
+import com.google.zxing.pdf417.PDF417Reader;
+import com.google.zxing.qrcode.QRCodeReader;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 代替MultiFormatReader，按hints选出相同的reader并依次尝试，同时记录每个reader的耗时，
+ * 自适应时按命中分数从高到低尝试。
+ */
+class ReaderChain {
+	private static final EnumSet<BarcodeFormat> ONE_D_FORMATS = EnumSet.of(BarcodeFormat.UPC_A, BarcodeFormat.UPC_E,
+			BarcodeFormat.EAN_13, BarcodeFormat.EAN_8, BarcodeFormat.CODABAR, BarcodeFormat.CODE_39,
+			BarcodeFormat.CODE_93, BarcodeFormat.CODE_128, BarcodeFormat.ITF, BarcodeFormat.RSS_14,
+			BarcodeFormat.RSS_EXPANDED);
+
+	private final Map<DecodeHintType, Object> hints;
+	private final String[] names;
+	private final Reader[] readers;
+	// Order of the current decode, reused to avoid allocating per frame
+	private final int[] order;
+	private final float[] scores;
+
+	ReaderChain(Map<DecodeHintType, Object> hints) {
+		this.hints = hints;
+		boolean tryHarder = hints.containsKey(DecodeHintType.TRY_HARDER);
+		@SuppressWarnings("unchecked")
+		Collection<BarcodeFormat> formats = (Collection<BarcodeFormat>) hints.get(DecodeHintType.POSSIBLE_FORMATS);
+		if (formats == null) {
+			formats = EnumSet.allOf(BarcodeFormat.class);
+		}
+		boolean hasOneD = false;
+		for (BarcodeFormat format : formats) {
+			hasOneD |= ONE_D_FORMATS.contains(format);
+		}
+		List<String> nameList = new ArrayList<String>();
+		List<Reader> readerList = new ArrayList<Reader>();
+		// Same order as MultiFormatReader, 1D readers go last when trying harder since they scan many rows
+		if (hasOneD && !tryHarder) {
+			nameList.add(ReaderStats.ONE_D);
+			readerList.add(new MultiFormatOneDReader(hints));
+		}
+		if (formats.contains(BarcodeFormat.QR_CODE)) {
+			nameList.add(BarcodeFormat.QR_CODE.name());
+			readerList.add(new QRCodeReader());
+		}
+		if (formats.contains(BarcodeFormat.DATA_MATRIX)) {
+			nameList.add(BarcodeFormat.DATA_MATRIX.name());
+			readerList.add(new DataMatrixReader());
+		}
+		if (formats.contains(BarcodeFormat.AZTEC)) {
+			nameList.add(BarcodeFormat.AZTEC.name());
+			readerList.add(new AztecReader());
+		}
+		if (formats.contains(BarcodeFormat.PDF_417)) {
+			nameList.add(BarcodeFormat.PDF_417.name());
+			readerList.add(new PDF417Reader());
+		}
+		if (formats.contains(BarcodeFormat.MAXICODE)) {
+			nameList.add(BarcodeFormat.MAXICODE.name());
+			readerList.add(new MaxiCodeReader());
+		}
+		if (hasOneD && tryHarder) {
+			nameList.add(ReaderStats.ONE_D);
+			readerList.add(new MultiFormatOneDReader(hints));
+		}
+		names = nameList.toArray(new String[nameList.size()]);
+		readers = readerList.toArray(new Reader[readerList.size()]);
+		order = new int[readers.length];
+		scores = new float[readers.length];
+	}
+
+	/**
+	 * @param log
+	 *                  记录每个reader的耗时和是否解出
+	 * @param adaptiveStats
+	 *                  不为null时按其中的命中分数从高到低尝试，否则按固定顺序
+	 */
+	Result decode(BinaryBitmap bitmap, ReaderStats.FrameLog log, ReaderStats adaptiveStats) throws NotFoundException {
+		sortReaders(adaptiveStats);
+		try {
+			for (int i = 0; i < order.length; i++) {
+				int index = order[i];
+				long start = System.nanoTime();
+				boolean hit = false;
+				try {
+					Result result = readers[index].decode(bitmap, hints);
+					hit = true;
+					return result;
+				} catch (ReaderException re) {
+					// Try the next reader
+				} finally {
+					// Also reached when the time budget interrupts the reader
+					log.add(names[index], System.nanoTime() - start, hit);
+				}
+			}
+		} finally {
+			for (Reader reader : readers) {
+				reader.reset();
+			}
+		}
+		throw NotFoundException.getNotFoundInstance();
+	}
+
+	/**
+	 * 按命中分数降序的插入排序，分数相同时保持原有顺序，reader只有几个
+	 */
+	private void sortReaders(ReaderStats adaptiveStats) {
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+			scores[i] = adaptiveStats == null ? 0 : adaptiveStats.getHitScore(names[i]);
+		}
+		if (adaptiveStats == null) {
+			return;
+		}
+		for (int i = 1; i < order.length; i++) {
+			int index = order[i];
+			int j = i - 1;
+			while (j >= 0 && scores[order[j]] < scores[index]) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = index;
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package com.samonxu.qrcode.core.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 一次扫描会话中各reader的尝试次数、命中次数和耗时，以及各格式的识别次数。
+ * <p>
+ * 解不出的帧在每个reader上花费的时间单独统计，用于判断哪些格式不值得识别。
+ * 自适应的{@link DecodeProfile}按这里的命中分数调整reader的尝试顺序。单码扫描每次会话只解出一帧，
+ * 所以同一个实例应该在多次扫描之间共用，每次会话结束后用{@link #resetCounts()}只清空计数。
+ * </p>
+ * 可以被多个线程中的{@link FrameDecoder}共用。
+ */
+public class ReaderStats {
+	/** 所有一维码共用一个reader，每行只扫描一次 */
+	public static final String ONE_D = "1D";
+	/** 多码模式下一次找出所有二维码的reader */
+	public static final String QR_CODE_MULTI = "QR_CODE_MULTI";
+
+	private static final float SCORE_SMOOTHING = 0.2f;
+
+	private static class ReaderRecord {
+		long attemptCount;
+		long hitCount;
+		long totalNanos;
+		long failedFrameNanos;
+		float hitScore;
+	}
+
+	/**
+	 * 一帧中每次reader尝试的记录，帧结束后才知道整帧是否解出，再一起计入统计。
+	 * 属于一个FrameDecoder，只在它的线程中使用。
+	 */
+	static class FrameLog {
+		private static final int INITIAL_CAPACITY = 16;
+
+		private String[] readers = new String[INITIAL_CAPACITY];
+		private long[] nanos = new long[INITIAL_CAPACITY];
+		private boolean[] hits = new boolean[INITIAL_CAPACITY];
+		private int size = 0;
+
+		void add(String reader, long elapsedNanos, boolean hit) {
+			if (size == readers.length) {
+				String[] newReaders = new String[size * 2];
+				long[] newNanos = new long[size * 2];
+				boolean[] newHits = new boolean[size * 2];
+				System.arraycopy(readers, 0, newReaders, 0, size);
+				System.arraycopy(nanos, 0, newNanos, 0, size);
+				System.arraycopy(hits, 0, newHits, 0, size);
+				readers = newReaders;
+				nanos = newNanos;
+				hits = newHits;
+			}
+			readers[size] = reader;
+			nanos[size] = elapsedNanos;
+			hits[size] = hit;
+			size++;
+		}
+
+		void clear() {
+			size = 0;
+		}
+	}
+
+	// Insertion ordered so the report lists readers in the order they were first tried
+	private final Map<String, ReaderRecord> readers = new LinkedHashMap<String, ReaderRecord>();
+	private final Map<BarcodeFormat, Integer> formatHits = new EnumMap<BarcodeFormat, Integer>(BarcodeFormat.class);
+	private long frameCount = 0;
+	private long failedFrameCount = 0;
+
+	/**
+	 * 一帧解码结束后计入统计并清空记录
+	 *
+	 * @param results
+	 *                  解码结果，没有识别出时为null
+	 */
+	synchronized void onFrameFinished(FrameLog log, Result[] results) {
+		boolean success = results != null;
+		frameCount++;
+		if (!success) {
+			failedFrameCount++;
+		} else {
+			for (Result result : results) {
+				Integer count = formatHits.get(result.getBarcodeFormat());
+				formatHits.put(result.getBarcodeFormat(), count == null ? 1 : count + 1);
+			}
+			// Every reader's score decays on a decoded frame, the one that decoded it moves up
+			for (ReaderRecord record : readers.values()) {
+				record.hitScore -= SCORE_SMOOTHING * record.hitScore;
+			}
+		}
+		for (int i = 0; i < log.size; i++) {
+			ReaderRecord record = getRecord(log.readers[i]);
+			record.attemptCount++;
+			record.totalNanos += log.nanos[i];
+			if (!success) {
+				record.failedFrameNanos += log.nanos[i];
+			}
+			if (log.hits[i]) {
+				record.hitCount++;
+				record.hitScore += SCORE_SMOOTHING;
+			}
+		}
+		log.clear();
+	}
+
+	/**
+	 * @return 最近解出的帧中由这个reader解出的平滑比例，0到1，还没尝试过时为0
+	 */
+	synchronized float getHitScore(String reader) {
+		ReaderRecord record = readers.get(reader);
+		return record == null ? 0 : record.hitScore;
+	}
+
+	public synchronized long getFrameCount() {
+		return frameCount;
+	}
+
+	public synchronized long getFailedFrameCount() {
+		return failedFrameCount;
+	}
+
+	/**
+	 * @return 没有识别出的帧在这个reader上花费的总时间，单位毫秒
+	 */
+	public synchronized long getFailedFrameMillis(String reader) {
+		ReaderRecord record = readers.get(reader);
+		return record == null ? 0 : record.failedFrameNanos / 1000000L;
+	}
+
+	/**
+	 * @return 各格式被识别的次数
+	 */
+	public synchronized Map<BarcodeFormat, Integer> getFormatHits() {
+		return new EnumMap<BarcodeFormat, Integer>(formatHits);
+	}
+
+	public synchronized void reset() {
+		readers.clear();
+		formatHits.clear();
+		frameCount = 0;
+		failedFrameCount = 0;
+	}
+
+	/**
+	 * 清空计数，保留命中分数，之后的自适应顺序不受影响
+	 */
+	public synchronized void resetCounts() {
+		for (ReaderRecord record : readers.values()) {
+			record.attemptCount = 0;
+			record.hitCount = 0;
+			record.totalNanos = 0;
+			record.failedFrameNanos = 0;
+		}
+		formatHits.clear();
+		frameCount = 0;
+		failedFrameCount = 0;
+	}
+
+	/**
+	 * @return 便于输出到日志的统计报告，每个reader一行
+	 */
+	public synchronized String report() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("frames=").append(frameCount).append(", failed=").append(failedFrameCount).append(", formats=")
+				.append(formatHits);
+		for (Map.Entry<String, ReaderRecord> entry : readers.entrySet()) {
+			ReaderRecord record = entry.getValue();
+			sb.append('\n').append(entry.getKey()).append(": attempts=").append(record.attemptCount).append(", hits=")
+					.append(record.hitCount).append(", failedFrameMs=").append(record.failedFrameNanos / 1000000L)
+					.append(", avgMs=").append(String.format(Locale.US, "%.2f", record.totalNanos / 1000000.0
+							/ Math.max(1, record.attemptCount))).append(", score=")
+					.append(String.format(Locale.US, "%.2f", record.hitScore));
+		}
+		return sb.toString();
+	}
+
+	private ReaderRecord getRecord(String reader) {
+		ReaderRecord record = readers.get(reader);
+		if (record == null) {
+			record = new ReaderRecord();
+			readers.put(reader, record);
+		}
+		return record;
+	}
+}
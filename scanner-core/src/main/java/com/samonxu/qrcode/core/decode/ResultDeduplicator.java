@@ -0,0 +1,114 @@
+package com.samonxu.qrcode.core.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 跨帧去重：同一内容、同一格式且位置相近的码只报告一次
+ */
+public class ResultDeduplicator {
+
+	private static class Entry {
+		String text;
+		BarcodeFormat format;
+		float x, y;
+	}
+
+	private static final int MAX_ENTRIES = 32;
+
+	private final List<Entry> entries = new ArrayList<Entry>();
+	private float tolerance;
+
+	/**
+	 * @param tolerance
+	 *                  中心点距离小于该值（像素）视为同一位置
+	 */
+	public ResultDeduplicator(float tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	public void setTolerance(float tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * @return 本次新出现的码，全部已见过时返回空数组
+	 */
+	public synchronized Result[] filter(Result[] results) {
+		List<Result> fresh = new ArrayList<Result>(results.length);
+		for (Result result : results) {
+			if (result != null && add(result)) {
+				fresh.add(result);
+			}
+		}
+		return fresh.toArray(new Result[fresh.size()]);
+	}
+
+	/**
+	 * @return 是否为新的码；已见过的码会更新其位置，以便跟踪缓慢移动的码
+	 */
+	public synchronized boolean add(Result result) {
+		float[] center = centerOf(result.getResultPoints());
+		for (Entry entry : entries) {
+			if (entry.format == result.getBarcodeFormat() && entry.text.equals(result.getText())
+					&& (center == null || isNear(entry, center))) {
+				if (center != null) {
+					entry.x = center[0];
+					entry.y = center[1];
+				}
+				return false;
+			}
+		}
+		Entry entry = new Entry();
+		entry.text = result.getText();
+		entry.format = result.getBarcodeFormat();
+		if (center != null) {
+			entry.x = center[0];
+			entry.y = center[1];
+		} else {
+			entry.x = entry.y = Float.NaN;
+		}
+		if (entries.size() >= MAX_ENTRIES) {
+			entries.remove(0);
+		}
+		entries.add(entry);
+		return true;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	private boolean isNear(Entry entry, float[] center) {
+		if (Float.isNaN(entry.x)) {
+			return true;
+		}
+		float dx = entry.x - center[0];
+		float dy = entry.y - center[1];
+		return dx * dx + dy * dy <= tolerance * tolerance;
+	}
+
+	private static float[] centerOf(ResultPoint[] points) {
+		if (points == null || points.length == 0) {
+			return null;
+		}
+		float x = 0, y = 0;
+		int count = 0;
+		for (ResultPoint point : points) {
+			if (point != null) {
+				x += point.getX();
+				y += point.getY();
+				count++;
+			}
+		}
+		return count == 0 ? null : new float[] { x / count, y / count };
+	}
+}
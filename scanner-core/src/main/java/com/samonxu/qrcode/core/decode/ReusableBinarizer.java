@@ -0,0 +1,271 @@
+package com.samonxu.qrcode.core.decode;
+
+import com.google.zxing.Binarizer;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.GlobalHistogramBinarizer;
+import com.google.zxing.common.HybridBinarizer;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 与{@link HybridBinarizer}算法相同、输出逐位一致的二值化器，但亮度拷贝、分块阈值数组和BitMatrix
+ * 在相同尺寸的帧之间复用，连续解码时不产生每帧的垃圾。
+ * <p>
+ * 每帧调用{@link #setSource}换入新的图像，解码结束后调用{@link #release()}。
+ * 同一时间只能在一个线程中使用，其他线程在release()之前调用setSource()会抛出IllegalStateException。
+ * 返回的BitMatrix在下一帧会被覆盖，不能跨帧保存。
+ * </p>
+ * 一维码使用的getBlackRow()继承自{@link GlobalHistogramBinarizer}，它本身就复用行缓冲。
+ */
+public final class ReusableBinarizer extends GlobalHistogramBinarizer {
+
+	// Same constants as HybridBinarizer
+	private static final int BLOCK_SIZE_POWER = 3;
+	private static final int BLOCK_SIZE = 1 << BLOCK_SIZE_POWER;
+	private static final int BLOCK_SIZE_MASK = BLOCK_SIZE - 1;
+	private static final int MINIMUM_DIMENSION = BLOCK_SIZE * 5;
+	private static final int MIN_DYNAMIC_RANGE = 24;
+
+	/**
+	 * 尺寸固定、可以换入不同帧的图像，作为Binarizer不可变的source
+	 */
+	private static final class FrameSource extends LuminanceSource {
+		private LuminanceSource delegate;
+
+		FrameSource(int width, int height) {
+			super(width, height);
+		}
+
+		@Override
+		public byte[] getRow(int y, byte[] row) {
+			return delegate.getRow(y, row);
+		}
+
+		@Override
+		public byte[] getMatrix() {
+			return delegate.getMatrix();
+		}
+	}
+
+	private final FrameSource frameSource;
+	private final AtomicReference<Thread> owner = new AtomicReference<Thread>();
+	private final int subWidth;
+	private final int subHeight;
+	private final byte[] luminances;
+	private final byte[] rowBuffer;
+	private final int[][] blackPoints;
+	private final BitMatrix matrix;
+	// The small-image fallback allocates, it is only hit by frames under 40 pixels
+	private BitMatrix fallbackMatrix;
+	private boolean isMatrixReady = false;
+
+	public ReusableBinarizer(int width, int height) {
+		this(new FrameSource(width, height));
+	}
+
+	private ReusableBinarizer(FrameSource frameSource) {
+		super(frameSource);
+		this.frameSource = frameSource;
+		int width = frameSource.getWidth();
+		int height = frameSource.getHeight();
+		if (width >= MINIMUM_DIMENSION && height >= MINIMUM_DIMENSION) {
+			int sw = width >> BLOCK_SIZE_POWER;
+			if ((width & BLOCK_SIZE_MASK) != 0) {
+				sw++;
+			}
+			int sh = height >> BLOCK_SIZE_POWER;
+			if ((height & BLOCK_SIZE_MASK) != 0) {
+				sh++;
+			}
+			subWidth = sw;
+			subHeight = sh;
+			luminances = new byte[width * height];
+			rowBuffer = new byte[width];
+			blackPoints = new int[sh][sw];
+			matrix = new BitMatrix(width, height);
+		} else {
+			subWidth = 0;
+			subHeight = 0;
+			luminances = null;
+			rowBuffer = null;
+			blackPoints = null;
+			matrix = null;
+		}
+	}
+
+	/**
+	 * @return 是否可以用于这个尺寸的图像
+	 */
+	public boolean isSizeOf(LuminanceSource source) {
+		return source.getWidth() == getWidth() && source.getHeight() == getHeight();
+	}
+
+	/**
+	 * 换入下一帧图像，之前计算的BitMatrix失效
+	 *
+	 * @throws IllegalStateException
+	 *                   尺寸不同，或正在被其他线程使用
+	 */
+	public void setSource(LuminanceSource source) {
+		if (!isSizeOf(source)) {
+			throw new IllegalArgumentException("Source is " + source.getWidth() + "x" + source.getHeight()
+					+ ", binarizer is " + getWidth() + "x" + getHeight());
+		}
+		Thread current = Thread.currentThread();
+		if (!owner.compareAndSet(null, current) && owner.get() != current) {
+			throw new IllegalStateException("ReusableBinarizer is in use by another thread");
+		}
+		frameSource.delegate = source;
+		isMatrixReady = false;
+		fallbackMatrix = null;
+	}
+
+	/**
+	 * 一帧解码结束后调用，释放对图像的引用，之后可以在其他线程中使用
+	 */
+	public void release() {
+		frameSource.delegate = null;
+		isMatrixReady = false;
+		fallbackMatrix = null;
+		owner.compareAndSet(Thread.currentThread(), null);
+	}
+
+	@Override
+	public BitMatrix getBlackMatrix() throws NotFoundException {
+		if (matrix == null) {
+			// Too small for blocks, fall back to the global histogram approach like HybridBinarizer
+			if (fallbackMatrix == null) {
+				fallbackMatrix = super.getBlackMatrix();
+			}
+			return fallbackMatrix;
+		}
+		if (isMatrixReady) {
+			return matrix;
+		}
+		int width = getWidth();
+		int height = getHeight();
+		LuminanceSource source = frameSource.delegate;
+		for (int y = 0; y < height; y++) {
+			byte[] row = source.getRow(y, rowBuffer);
+			System.arraycopy(row, 0, luminances, y * width, width);
+		}
+		calculateBlackPoints(luminances, subWidth, subHeight, width, height, blackPoints);
+		matrix.clear();
+		calculateThresholdForBlock(luminances, subWidth, subHeight, width, height, blackPoints, matrix);
+		isMatrixReady = true;
+		return matrix;
+	}
+
+	/**
+	 * 用于BinaryBitmap的裁剪和旋转，这种情况下不复用缓冲
+	 */
+	@Override
+	public Binarizer createBinarizer(LuminanceSource source) {
+		return new HybridBinarizer(source);
+	}
+
+	private static void calculateThresholdForBlock(byte[] luminances, int subWidth, int subHeight, int width,
+			int height, int[][] blackPoints, BitMatrix matrix) {
+		for (int y = 0; y < subHeight; y++) {
+			int yoffset = y << BLOCK_SIZE_POWER;
+			int maxYOffset = height - BLOCK_SIZE;
+			if (yoffset > maxYOffset) {
+				yoffset = maxYOffset;
+			}
+			for (int x = 0; x < subWidth; x++) {
+				int xoffset = x << BLOCK_SIZE_POWER;
+				int maxXOffset = width - BLOCK_SIZE;
+				if (xoffset > maxXOffset) {
+					xoffset = maxXOffset;
+				}
+				int left = cap(x, 2, subWidth - 3);
+				int top = cap(y, 2, subHeight - 3);
+				int sum = 0;
+				for (int z = -2; z <= 2; z++) {
+					int[] blackRow = blackPoints[top + z];
+					sum += blackRow[left - 2] + blackRow[left - 1] + blackRow[left] + blackRow[left + 1]
+							+ blackRow[left + 2];
+				}
+				int average = sum / 25;
+				thresholdBlock(luminances, xoffset, yoffset, average, width, matrix);
+			}
+		}
+	}
+
+	private static int cap(int value, int min, int max) {
+		return value < min ? min : value > max ? max : value;
+	}
+
+	private static void thresholdBlock(byte[] luminances, int xoffset, int yoffset, int threshold, int stride,
+			BitMatrix matrix) {
+		for (int y = 0, offset = yoffset * stride + xoffset; y < BLOCK_SIZE; y++, offset += stride) {
+			for (int x = 0; x < BLOCK_SIZE; x++) {
+				// <= so that black == 0 pixels stay black even if the threshold is 0
+				if ((luminances[offset + x] & 0xFF) <= threshold) {
+					matrix.set(xoffset + x, yoffset + y);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 计算每个8x8块的黑点，写入复用的blackPoints
+	 */
+	private static void calculateBlackPoints(byte[] luminances, int subWidth, int subHeight, int width, int height,
+			int[][] blackPoints) {
+		for (int y = 0; y < subHeight; y++) {
+			int yoffset = y << BLOCK_SIZE_POWER;
+			int maxYOffset = height - BLOCK_SIZE;
+			if (yoffset > maxYOffset) {
+				yoffset = maxYOffset;
+			}
+			for (int x = 0; x < subWidth; x++) {
+				int xoffset = x << BLOCK_SIZE_POWER;
+				int maxXOffset = width - BLOCK_SIZE;
+				if (xoffset > maxXOffset) {
+					xoffset = maxXOffset;
+				}
+				int sum = 0;
+				int min = 0xFF;
+				int max = 0;
+				for (int yy = 0, offset = yoffset * width + xoffset; yy < BLOCK_SIZE; yy++, offset += width) {
+					for (int xx = 0; xx < BLOCK_SIZE; xx++) {
+						int pixel = luminances[offset + xx] & 0xFF;
+						sum += pixel;
+						if (pixel < min) {
+							min = pixel;
+						}
+						if (pixel > max) {
+							max = pixel;
+						}
+					}
+					// Dynamic range is met, finish the rest of the rows without min/max
+					if (max - min > MIN_DYNAMIC_RANGE) {
+						for (yy++, offset += width; yy < BLOCK_SIZE; yy++, offset += width) {
+							for (int xx = 0; xx < BLOCK_SIZE; xx++) {
+								sum += luminances[offset + xx] & 0xFF;
+							}
+						}
+					}
+				}
+
+				int average = sum >> (BLOCK_SIZE_POWER * 2);
+				if (max - min <= MIN_DYNAMIC_RANGE) {
+					// Low contrast block, assume background and use half the min
+					average = min / 2;
+					if (y > 0 && x > 0) {
+						// Blocks with neighbors take the neighbors' black point if they look darker than it
+						int averageNeighborBlackPoint = (blackPoints[y - 1][x] + (2 * blackPoints[y][x - 1])
+								+ blackPoints[y - 1][x - 1]) / 4;
+						if (min < averageNeighborBlackPoint) {
+							average = averageNeighborBlackPoint;
+						}
+					}
+				}
+				blackPoints[y][x] = average;
+			}
+		}
+	}
+}
@@ -0,0 +1,312 @@
+package com.samonxu.qrcode.core.decode;
+
+import com.samonxu.qrcode.core.CropRect;
+
+/**
+ * 根据最近的识别情况、画面变化、电量和温度决定扫描节奏：两帧解码之间的间隔、解码线程数和预览帧率上限。
+ * <p>
+ * 找到可能点、解出码或画面在变化时为{@link Mode#ACTIVE}，全速解码；连续{@link #IDLE_AFTER_MS}毫秒都没有这些迹象时
+ * 进入{@link Mode#IDLE}，只低频取帧检查画面变化，一有变化立即回到ACTIVE。
+ * 电量低且没有充电，或电池温度偏高时为{@link Mode#THROTTLED}，降低解码频率；电量或温度到了临界值时按IDLE的节奏解码。
+ * 即使一直有可能点，连续几十帧都解不出时成功率降到{@link #LOW_SUCCESS_RATE}以下，也改为THROTTLED，
+ * 多半是解不出的码（如破损或过小），全速解码只是白白耗电发热，解出一帧后立即恢复。
+ * </p>
+ * 可以在多个线程中调用，模式变化时在触发变化的线程中回调{@link Listener}。
+ */
+public class ScanGovernor {
+
+	public enum Mode {
+		/** 全速解码 */
+		ACTIVE,
+		/** 电量或温度受限，降低解码频率 */
+		THROTTLED,
+		/** 没有码的迹象，或电量、温度到了临界值，低频取帧 */
+		IDLE
+	}
+
+	public interface Listener {
+		void onModeChanged(GovernorState state);
+	}
+
+	/** 没有可能点、解码成功和画面变化多久之后进入IDLE */
+	public static final long IDLE_AFTER_MS = 5000L;
+	/** 平滑成功率低于这个值时降低解码频率，从1开始连续失败约44帧后低于这个值 */
+	public static final float LOW_SUCCESS_RATE = 0.01f;
+
+	private static final long THROTTLED_INTERVAL_MS = 150L;
+	private static final long IDLE_INTERVAL_MS = 500L;
+	private static final int ACTIVE_MAX_FPS = 30;
+	private static final int THROTTLED_MAX_FPS = 15;
+	private static final int IDLE_MAX_FPS = 10;
+
+	private static final int LOW_BATTERY_PERCENT = 15;
+	private static final int CRITICAL_BATTERY_PERCENT = 5;
+	// Battery temperature is the only thermal reading available before API 29
+	private static final float HOT_TEMPERATURE = 42f;
+	private static final float CRITICAL_TEMPERATURE = 46f;
+	// Leave the hot state only after cooling down a little, so the mode does not flap at the threshold
+	private static final float TEMPERATURE_HYSTERESIS = 1.5f;
+
+	private static final float SUCCESS_SMOOTHING = 0.1f;
+	private static final int GRID_SIZE = 16;
+	private static final int SAMPLES_PER_CELL = 4;
+	// Mean luma change per cell after removing the global change caused by exposure
+	private static final float MOTION_THRESHOLD = 6f;
+	private static final float ACTIVITY_SMOOTHING = 0.5f;
+
+	private final int activeWorkerCount;
+	private Listener listener;
+
+	private final float[] grid = new float[GRID_SIZE * GRID_SIZE];
+	private final float[] previousGrid = new float[GRID_SIZE * GRID_SIZE];
+	private boolean hasPreviousGrid = false;
+	private float sceneActivity = 0;
+
+	// Starts optimistic, only a long run of failed decodes brings it below LOW_SUCCESS_RATE
+	private float successRate = 1;
+	private long decodeCount = 0;
+	private long lastActivity = Long.MIN_VALUE;
+
+	private int batteryPercent = 100;
+	private boolean isCharging = true;
+	private float temperature = Float.NaN;
+	private boolean isHot = false;
+	private boolean isCriticallyHot = false;
+
+	private Mode mode = Mode.ACTIVE;
+	private String reason = "start";
+	private int modeChangeCount = 0;
+
+	/**
+	 * @param activeWorkerCount
+	 *                  ACTIVE模式下的解码线程数，其他模式下只用一个
+	 */
+	public ScanGovernor(int activeWorkerCount) {
+		if (activeWorkerCount < 1) {
+			throw new IllegalArgumentException("activeWorkerCount < 1");
+		}
+		this.activeWorkerCount = activeWorkerCount;
+	}
+
+	public synchronized void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * 每取一帧调用一次，估计扫描区域内的画面变化
+	 *
+	 * @param yData
+	 *                  亮度平面，每行width个字节
+	 * @param window
+	 *                  扫描区域
+	 */
+	public void onFrame(byte[] yData, int width, CropRect window, long now) {
+		GovernorState changed;
+		synchronized (this) {
+			float activity = measureActivity(yData, width, window);
+			sceneActivity = sceneActivity + ACTIVITY_SMOOTHING * (activity - sceneActivity);
+			if (activity >= MOTION_THRESHOLD) {
+				lastActivity = now;
+			}
+			changed = update(now);
+		}
+		notifyChanged(changed);
+	}
+
+	/**
+	 * 解码时找到可能点时调用
+	 */
+	public void onPossibleResultPoint(long now) {
+		GovernorState changed;
+		synchronized (this) {
+			lastActivity = now;
+			changed = update(now);
+		}
+		notifyChanged(changed);
+	}
+
+	/**
+	 * 每帧解码结束后调用
+	 */
+	public void onDecodeFinished(boolean success, long now) {
+		GovernorState changed;
+		synchronized (this) {
+			decodeCount++;
+			successRate += SUCCESS_SMOOTHING * ((success ? 1f : 0f) - successRate);
+			if (success) {
+				lastActivity = now;
+			}
+			changed = update(now);
+		}
+		notifyChanged(changed);
+	}
+
+	/**
+	 * 电池状态变化时调用
+	 *
+	 * @param temperature
+	 *                  电池温度，单位摄氏度，未知时传入NaN
+	 */
+	public void setBatteryState(int percent, boolean charging, float temperature, long now) {
+		GovernorState changed;
+		synchronized (this) {
+			batteryPercent = percent;
+			isCharging = charging;
+			this.temperature = temperature;
+			if (Float.isNaN(temperature)) {
+				isHot = isCriticallyHot = false;
+			} else {
+				isHot = temperature >= (isHot ? HOT_TEMPERATURE - TEMPERATURE_HYSTERESIS : HOT_TEMPERATURE);
+				isCriticallyHot = temperature >= (isCriticallyHot ? CRITICAL_TEMPERATURE - TEMPERATURE_HYSTERESIS
+						: CRITICAL_TEMPERATURE);
+			}
+			changed = update(now);
+		}
+		notifyChanged(changed);
+	}
+
+	public synchronized Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * @return 一帧解码结束后，请求下一帧之前等待的时间
+	 */
+	public synchronized long getFrameIntervalMs() {
+		switch (mode) {
+		case THROTTLED:
+			return THROTTLED_INTERVAL_MS;
+		case IDLE:
+			return IDLE_INTERVAL_MS;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * @return 同时解码的帧数上限
+	 */
+	public synchronized int getWorkerCount() {
+		return mode == Mode.ACTIVE ? activeWorkerCount : 1;
+	}
+
+	/**
+	 * @return 预览帧率上限
+	 */
+	public synchronized int getMaxPreviewFps() {
+		switch (mode) {
+		case THROTTLED:
+			return THROTTLED_MAX_FPS;
+		case IDLE:
+			return IDLE_MAX_FPS;
+		default:
+			return ACTIVE_MAX_FPS;
+		}
+	}
+
+	public synchronized GovernorState getState() {
+		return createState();
+	}
+
+	private GovernorState update(long now) {
+		Mode newMode;
+		String newReason;
+		boolean isIdle = lastActivity != Long.MIN_VALUE && now - lastActivity >= IDLE_AFTER_MS;
+		if (isCriticallyHot) {
+			newMode = Mode.IDLE;
+			newReason = "critical temperature";
+		} else if (!isCharging && batteryPercent <= CRITICAL_BATTERY_PERCENT) {
+			newMode = Mode.IDLE;
+			newReason = "critical battery";
+		} else if (isIdle) {
+			newMode = Mode.IDLE;
+			newReason = "no activity";
+		} else if (isHot) {
+			newMode = Mode.THROTTLED;
+			newReason = "high temperature";
+		} else if (!isCharging && batteryPercent <= LOW_BATTERY_PERCENT) {
+			newMode = Mode.THROTTLED;
+			newReason = "low battery";
+		} else if (successRate < LOW_SUCCESS_RATE) {
+			// Finder points keep the scan out of IDLE, but the code in view does not decode at full speed either
+			newMode = Mode.THROTTLED;
+			newReason = "low success rate";
+		} else {
+			newMode = Mode.ACTIVE;
+			newReason = "activity";
+		}
+		if (lastActivity == Long.MIN_VALUE) {
+			// The idle timer starts with the first frame
+			lastActivity = now;
+		}
+		if (newMode == mode) {
+			return null;
+		}
+		mode = newMode;
+		reason = newReason;
+		modeChangeCount++;
+		return listener == null ? null : createState();
+	}
+
+	private void notifyChanged(GovernorState state) {
+		Listener l;
+		synchronized (this) {
+			l = listener;
+		}
+		// Outside the lock, the listener may query the governor from another thread
+		if (state != null && l != null) {
+			l.onModeChanged(state);
+		}
+	}
+
+	/**
+	 * 把扫描区域分成GRID_SIZE x GRID_SIZE块，每块稀疏采样求平均亮度，与上一帧比较。
+	 * 先减去所有块的平均变化，曝光和手电筒引起的整体亮度变化不算作画面变化。
+	 *
+	 * @return 每块亮度变化的平均值
+	 */
+	private float measureActivity(byte[] yData, int width, CropRect window) {
+		int cellWidth = window.width() / GRID_SIZE;
+		int cellHeight = window.height() / GRID_SIZE;
+		if (cellWidth < 1 || cellHeight < 1) {
+			return 0;
+		}
+		int stepX = Math.max(1, cellWidth / SAMPLES_PER_CELL);
+		int stepY = Math.max(1, cellHeight / SAMPLES_PER_CELL);
+		float totalChange = 0;
+		for (int cy = 0; cy < GRID_SIZE; cy++) {
+			for (int cx = 0; cx < GRID_SIZE; cx++) {
+				int left = window.left + cx * cellWidth;
+				int top = window.top + cy * cellHeight;
+				int sum = 0;
+				int count = 0;
+				for (int y = top + stepY / 2; y < top + cellHeight; y += stepY) {
+					int offset = y * width;
+					for (int x = left + stepX / 2; x < left + cellWidth; x += stepX) {
+						sum += yData[offset + x] & 0xFF;
+						count++;
+					}
+				}
+				int cell = cy * GRID_SIZE + cx;
+				grid[cell] = (float) sum / count;
+				totalChange += grid[cell] - previousGrid[cell];
+			}
+		}
+		float activity = 0;
+		if (hasPreviousGrid) {
+			float globalChange = totalChange / grid.length;
+			for (int i = 0; i < grid.length; i++) {
+				activity += Math.abs(grid[i] - previousGrid[i] - globalChange);
+			}
+			activity /= grid.length;
+		}
+		System.arraycopy(grid, 0, previousGrid, 0, grid.length);
+		hasPreviousGrid = true;
+		return activity;
+	}
+
+	private GovernorState createState() {
+		return new GovernorState(mode, reason, getFrameIntervalMs(), getWorkerCount(), getMaxPreviewFps(),
+				successRate, decodeCount, sceneActivity, batteryPercent, isCharging, temperature, modeChangeCount);
+	}
+}
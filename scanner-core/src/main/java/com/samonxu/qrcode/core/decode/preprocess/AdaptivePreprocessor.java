@@ -0,0 +1,54 @@
+package com.samonxu.qrcode.core.decode.preprocess;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * 只在普通解码连续失败几次之后才启用预处理，并且与普通解码逐帧交替，
+ * 这样能直接解出来的画面不会多付出预处理的开销。任意一次解码成功后重新计数。
+ */
+public class AdaptivePreprocessor {
+
+	private static final int DEFAULT_FAILURES_BEFORE_PREPROCESS = 3;
+
+	private final PreprocessChain chain;
+	private final int failuresBeforePreprocess;
+	private int failureStreak;
+	private boolean isLastPreprocessed;
+
+	public AdaptivePreprocessor() {
+		this(PreprocessChain.createDefault(), DEFAULT_FAILURES_BEFORE_PREPROCESS);
+	}
+
+	public AdaptivePreprocessor(PreprocessChain chain, int failuresBeforePreprocess) {
+		this.chain = chain;
+		this.failuresBeforePreprocess = failuresBeforePreprocess;
+	}
+
+	/**
+	 * @return 本帧是否应该经过预处理再解码
+	 */
+	public boolean shouldPreprocess() {
+		return failureStreak >= failuresBeforePreprocess && !isLastPreprocessed;
+	}
+
+	public LuminanceSource process(LuminanceSource source) {
+		return chain.process(source);
+	}
+
+	/**
+	 * 每帧解码结束后调用
+	 */
+	public void onDecodeFinished(boolean preprocessed, boolean success) {
+		isLastPreprocessed = preprocessed;
+		if (success) {
+			failureStreak = 0;
+			isLastPreprocessed = false;
+		} else if (!preprocessed) {
+			failureStreak++;
+		}
+	}
+
+	public PreprocessChain getChain() {
+		return chain;
+	}
+}
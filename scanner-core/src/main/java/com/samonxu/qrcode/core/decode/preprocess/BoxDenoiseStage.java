@@ -0,0 +1,38 @@
+package com.samonxu.qrcode.core.decode.preprocess;
+
+/**
+ * 3x3均值滤波，先按列累加3行，再在行内横向累加，边缘像素重复使用
+ */
+public class BoxDenoiseStage implements LuminanceStage {
+
+	// (sum * RECIPROCAL_9) >> 16 == sum / 9 for every sum of nine bytes
+	private static final int RECIPROCAL_9 = 7282;
+
+	private int[] columnSums = new int[0];
+
+	@Override
+	public String getName() {
+		return "box3x3";
+	}
+
+	@Override
+	public void process(byte[] src, byte[] dst, int width, int height) {
+		if (columnSums.length < width) {
+			columnSums = new int[width];
+		}
+		int[] sums = columnSums;
+		int last = width - 1;
+		for (int y = 0; y < height; y++) {
+			int top = (y > 0 ? y - 1 : y) * width;
+			int middle = y * width;
+			int bottom = (y < height - 1 ? y + 1 : y) * width;
+			for (int x = 0; x < width; x++) {
+				sums[x] = (src[top + x] & 0xFF) + (src[middle + x] & 0xFF) + (src[bottom + x] & 0xFF);
+			}
+			for (int x = 0; x < width; x++) {
+				int sum = sums[x > 0 ? x - 1 : x] + sums[x] + sums[x < last ? x + 1 : x];
+				dst[middle + x] = (byte) ((sum * RECIPROCAL_9) >> 16);
+			}
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package com.samonxu.qrcode.core.decode.preprocess;
+
+/**
+ * 局部对比度拉伸。把图像分成GRID x GRID个区块，统计每个区块的暗端和亮端分位数，
+ * 每个像素用相邻区块的分位数双线性插值得到自己的拉伸区间，从而抵消反光和阴影造成的亮度不均。
+ */
+public class ContrastStretchStage implements LuminanceStage {
+
+	private static final int GRID = 4;
+	private static final int SAMPLE_STEP = 2;
+	private static final float LOW_FRACTION = 0.02f;
+	private static final float HIGH_FRACTION = 0.98f;
+	private static final int MIN_RANGE = 32;
+
+	private final int[] histogram = new int[256];
+	private final int[] tileLow = new int[GRID * GRID];
+	private final int[] tileRange = new int[GRID * GRID];
+	private final int[] rowLow = new int[GRID];
+	private final int[] rowRange = new int[GRID];
+	private int[] columnTiles = new int[0];
+	private int[] columnWeights = new int[0];
+
+	@Override
+	public String getName() {
+		return "contrast";
+	}
+
+	@Override
+	public void process(byte[] src, byte[] dst, int width, int height) {
+		computeTiles(src, width, height);
+		prepareColumns(width);
+		int tileHeight = (height + GRID - 1) / GRID;
+		int[] lows = rowLow;
+		int[] ranges = rowRange;
+		for (int y = 0; y < height; y++) {
+			// Interpolate between the centers of the two nearest tile rows, weights are in 1/256
+			int ty = (y * 256 - tileHeight * 128) / tileHeight;
+			int row0 = clamp(ty >> 8, 0, GRID - 1);
+			int row1 = row0 < GRID - 1 ? row0 + 1 : row0;
+			int wy = ty < 0 ? 0 : ty & 0xFF;
+			for (int tx = 0; tx < GRID; tx++) {
+				lows[tx] = tileLow[row0 * GRID + tx] * (256 - wy) + tileLow[row1 * GRID + tx] * wy;
+				ranges[tx] = tileRange[row0 * GRID + tx] * (256 - wy) + tileRange[row1 * GRID + tx] * wy;
+			}
+			int offset = y * width;
+			for (int x = 0; x < width; x++) {
+				int col0 = columnTiles[x];
+				int col1 = col0 < GRID - 1 ? col0 + 1 : col0;
+				int wx = columnWeights[x];
+				int low = (lows[col0] * (256 - wx) + lows[col1] * wx) >> 16;
+				int range = (ranges[col0] * (256 - wx) + ranges[col1] * wx) >> 16;
+				int value = ((src[offset + x] & 0xFF) - low) * 255 / range;
+				dst[offset + x] = (byte) (value < 0 ? 0 : (value > 255 ? 255 : value));
+			}
+		}
+	}
+
+	private void computeTiles(byte[] src, int width, int height) {
+		int[] bins = histogram;
+		for (int ty = 0; ty < GRID; ty++) {
+			int top = ty * height / GRID;
+			int bottom = (ty + 1) * height / GRID;
+			for (int tx = 0; tx < GRID; tx++) {
+				int left = tx * width / GRID;
+				int right = (tx + 1) * width / GRID;
+				for (int i = 0; i < 256; i++) {
+					bins[i] = 0;
+				}
+				int count = 0;
+				for (int y = top; y < bottom; y += SAMPLE_STEP) {
+					int offset = y * width;
+					for (int x = left; x < right; x += SAMPLE_STEP) {
+						bins[src[offset + x] & 0xFF]++;
+						count++;
+					}
+				}
+				int low = percentile(bins, (int) (count * LOW_FRACTION));
+				int high = percentile(bins, (int) (count * HIGH_FRACTION));
+				if (high - low < MIN_RANGE) {
+					// Flat tile, widen the range around its middle instead of amplifying noise
+					int middle = (low + high) / 2;
+					low = clamp(middle - MIN_RANGE / 2, 0, 255 - MIN_RANGE);
+					high = low + MIN_RANGE;
+				}
+				tileLow[ty * GRID + tx] = low;
+				tileRange[ty * GRID + tx] = high - low;
+			}
+		}
+	}
+
+	private void prepareColumns(int width) {
+		if (columnTiles.length != width) {
+			columnTiles = new int[width];
+			columnWeights = new int[width];
+		}
+		int tileWidth = (width + GRID - 1) / GRID;
+		for (int x = 0; x < width; x++) {
+			int tx = (x * 256 - tileWidth * 128) / tileWidth;
+			int col0 = clamp(tx >> 8, 0, GRID - 1);
+			columnTiles[x] = col0;
+			columnWeights[x] = tx < 0 || col0 == GRID - 1 ? 0 : tx & 0xFF;
+		}
+	}
+
+	private static int percentile(int[] bins, int target) {
+		int accumulated = 0;
+		for (int i = 0; i < 256; i++) {
+			accumulated += bins[i];
+			if (accumulated > target) {
+				return i;
+			}
+		}
+		return 255;
+	}
+
+	private static int clamp(int value, int min, int max) {
+		return value < min ? min : (value > max ? max : value);
+	}
+}
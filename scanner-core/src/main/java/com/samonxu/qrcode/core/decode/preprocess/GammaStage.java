@@ -0,0 +1,31 @@
+package com.samonxu.qrcode.core.decode.preprocess;
+
+/**
+ * 查表做gamma校正，gamma小于1时提亮暗部
+ */
+public class GammaStage implements LuminanceStage {
+
+	private final byte[] table = new byte[256];
+	private final float gamma;
+
+	public GammaStage(float gamma) {
+		this.gamma = gamma;
+		for (int i = 0; i < 256; i++) {
+			table[i] = (byte) Math.round(255 * Math.pow(i / 255.0, gamma));
+		}
+	}
+
+	@Override
+	public String getName() {
+		return "gamma(" + gamma + ")";
+	}
+
+	@Override
+	public void process(byte[] src, byte[] dst, int width, int height) {
+		byte[] lut = table;
+		int area = width * height;
+		for (int i = 0; i < area; i++) {
+			dst[i] = lut[src[i] & 0xFF];
+		}
+	}
+}
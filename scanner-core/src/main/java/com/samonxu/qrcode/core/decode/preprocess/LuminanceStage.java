@@ -0,0 +1,18 @@
+package com.samonxu.qrcode.core.decode.preprocess;
+
+/**
+ * 亮度预处理阶段。实现类在多帧之间复用自己的缓冲区，尺寸不变时处理过程不分配内存，
+ * 同一时间只能在一个线程中使用。
+ */
+public interface LuminanceStage {
+
+	public String getName();
+
+	/**
+	 * @param src
+	 *                  输入亮度，按行连续存储，不能修改
+	 * @param dst
+	 *                  输出亮度，长度至少为width * height，不会与src相同
+	 */
+	public void process(byte[] src, byte[] dst, int width, int height);
+}
@@ -0,0 +1,102 @@
+package com.samonxu.qrcode.core.decode.preprocess;
+
+import com.google.zxing.LuminanceSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 依次执行多个预处理阶段，原图逐行读入复用的缓冲区，中间结果在两块复用的缓冲区之间交替写入，并统计每个阶段的耗时。
+ * 同一时间只能在一个线程中使用。
+ */
+public class PreprocessChain {
+
+	private final List<LuminanceStage> stages = new ArrayList<LuminanceStage>();
+	private long[] stageNanos = new long[0];
+	private long runCount;
+	private byte[] bufferA = new byte[0];
+	private byte[] bufferB = new byte[0];
+	private byte[] sourceBuffer = new byte[0];
+	private byte[] rowBuffer = new byte[0];
+
+	/**
+	 * @return 默认的处理链：均值降噪、局部对比度拉伸、提亮暗部
+	 */
+	public static PreprocessChain createDefault() {
+		return new PreprocessChain().addStage(new BoxDenoiseStage()).addStage(new ContrastStretchStage())
+				.addStage(new GammaStage(0.8f));
+	}
+
+	public PreprocessChain addStage(LuminanceStage stage) {
+		stages.add(stage);
+		long[] nanos = new long[stages.size()];
+		System.arraycopy(stageNanos, 0, nanos, 0, stageNanos.length);
+		stageNanos = nanos;
+		return this;
+	}
+
+	/**
+	 * @return 处理后的亮度图像，持有链内部的缓冲区，下一次调用process前有效
+	 */
+	public LuminanceSource process(LuminanceSource source) {
+		int width = source.getWidth();
+		int height = source.getHeight();
+		int area = width * height;
+		if (bufferA.length < area) {
+			bufferA = new byte[area];
+			bufferB = new byte[area];
+			sourceBuffer = new byte[area];
+		}
+		if (rowBuffer.length < width) {
+			rowBuffer = new byte[width];
+		}
+		// getMatrix() of a cropped source allocates and copies the whole crop on every call
+		for (int y = 0; y < height; y++) {
+			byte[] row = source.getRow(y, rowBuffer);
+			System.arraycopy(row, 0, sourceBuffer, y * width, width);
+		}
+		byte[] input = sourceBuffer;
+		byte[] output = bufferA;
+		for (int i = 0; i < stages.size(); i++) {
+			long start = System.nanoTime();
+			stages.get(i).process(input, output, width, height);
+			stageNanos[i] += System.nanoTime() - start;
+			input = output;
+			output = output == bufferA ? bufferB : bufferA;
+		}
+		runCount++;
+		if (input == sourceBuffer) {
+			return source;
+		}
+		return new PreprocessedLuminanceSource(input, width, height);
+	}
+
+	public int getStageCount() {
+		return stages.size();
+	}
+
+	public String getStageName(int index) {
+		return stages.get(index).getName();
+	}
+
+	/**
+	 * @return 该阶段每帧的平均耗时，单位为微秒
+	 */
+	public long getAverageStageMicros(int index) {
+		return runCount == 0 ? 0 : stageNanos[index] / runCount / 1000;
+	}
+
+	/**
+	 * @return 形如"box3x3=120us contrast=480us"的耗时报告
+	 */
+	public String getTimingReport() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < stages.size(); i++) {
+			if (i > 0) {
+				builder.append(' ');
+			}
+			builder.append(getStageName(i)).append('=').append(getAverageStageMicros(i)).append("us");
+		}
+		return builder.toString();
+	}
+}
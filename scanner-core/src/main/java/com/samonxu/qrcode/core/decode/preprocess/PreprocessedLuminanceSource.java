@@ -0,0 +1,40 @@
+package com.samonxu.qrcode.core.decode.preprocess;
+
+import com.google.zxing.LuminanceSource;
+
+/**
+ * 直接包装预处理后的亮度缓冲区，getMatrix不复制
+ */
+class PreprocessedLuminanceSource extends LuminanceSource {
+
+	private final byte[] luminances;
+
+	PreprocessedLuminanceSource(byte[] luminances, int width, int height) {
+		super(width, height);
+		this.luminances = luminances;
+	}
+
+	@Override
+	public byte[] getRow(int y, byte[] row) {
+		if (y < 0 || y >= getHeight()) {
+			throw new IllegalArgumentException("Requested row is outside the image: " + y);
+		}
+		int width = getWidth();
+		if (row == null || row.length < width) {
+			row = new byte[width];
+		}
+		System.arraycopy(luminances, y * width, row, 0, width);
+		return row;
+	}
+
+	@Override
+	public byte[] getMatrix() {
+		int area = getWidth() * getHeight();
+		if (luminances.length == area) {
+			return luminances;
+		}
+		byte[] matrix = new byte[area];
+		System.arraycopy(luminances, 0, matrix, 0, area);
+		return matrix;
+	}
+}
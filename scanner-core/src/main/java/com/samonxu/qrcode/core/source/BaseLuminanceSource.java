@@ -0,0 +1,22 @@
+package com.samonxu.qrcode.core.source;
+
+import com.google.zxing.LuminanceSource;
+
+public abstract class BaseLuminanceSource extends LuminanceSource {
+
+	protected BaseLuminanceSource(int width, int height) {
+		super(width, height);
+	}
+
+	/**
+	 * 根据扫描结果，生成灰度图像的ARGB像素，按行连续存储，大小为getWidth() * getHeight()
+	 */
+	public abstract int[] renderCroppedGreyScalePixels();
+
+	/**
+	 * @return 是否是反色视图
+	 */
+	public boolean isInverted() {
+		return false;
+	}
+}
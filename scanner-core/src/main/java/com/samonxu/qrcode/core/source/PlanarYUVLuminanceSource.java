@@ -14,12 +14,10 @@
  * limitations under the License.
  */
 
-package com.samonxu.qrcode.demo.decode;
+package com.samonxu.qrcode.core.source;
 
-import android.graphics.Bitmap;
-import android.graphics.Rect;
-
-import com.samonxu.qrcode.demo.camera.Size;
+import com.samonxu.qrcode.core.CropRect;
+import com.samonxu.qrcode.core.Size;
 
 /**
  * <p>
@@ -55,10 +53,11 @@ import com.samonxu.qrcode.demo.camera.Size;
  * 本类兼容所有Planar格式的YUV图像。
  * </p>
  */
-public class PlanarYUVLuminanceSource extends LuminanceSource {
+public class PlanarYUVLuminanceSource extends BaseLuminanceSource {
 	private byte[] yuvData;
 	private Size dataSize;
-	private Rect previewRect;
+	private CropRect previewRect;
+	private final boolean isInverted;
 
 	/**
 	 * @param yuvData
@@ -68,7 +67,11 @@ public class PlanarYUVLuminanceSource extends LuminanceSource {
 	 * @param previewRect
 	 *                  要处理的图像区域
 	 */
-	public PlanarYUVLuminanceSource(byte[] yuvData, Size dataSize, Rect previewRect) {
+	public PlanarYUVLuminanceSource(byte[] yuvData, Size dataSize, CropRect previewRect) {
+		this(yuvData, dataSize, previewRect, false);
+	}
+
+	private PlanarYUVLuminanceSource(byte[] yuvData, Size dataSize, CropRect previewRect, boolean inverted) {
 		super(previewRect.width(), previewRect.height());
 
 		if (previewRect.left + previewRect.width() > dataSize.width || previewRect.top + previewRect.height() > dataSize.height) {
@@ -78,6 +81,20 @@ public class PlanarYUVLuminanceSource extends LuminanceSource {
 		this.yuvData = yuvData;
 		this.dataSize = dataSize;
 		this.previewRect = previewRect;
+		this.isInverted = inverted;
+	}
+
+	/**
+	 * 返回共用同一份YUV数据的反色视图，不复制数据，读取时才取反，用于识别深色背景上的浅色码
+	 */
+	@Override
+	public PlanarYUVLuminanceSource invert() {
+		return new PlanarYUVLuminanceSource(yuvData, dataSize, previewRect, !isInverted);
+	}
+
+	@Override
+	public boolean isInverted() {
+		return isInverted;
 	}
 
 	@Override
@@ -90,7 +107,11 @@ public class PlanarYUVLuminanceSource extends LuminanceSource {
 			row = new byte[width];
 		}
 		int offset = (y + previewRect.top) * dataSize.width + previewRect.left;
-		System.arraycopy(yuvData, offset, row, 0, width);
+		if (isInverted) {
+			invertCopy(yuvData, offset, row, 0, width);
+		} else {
+			System.arraycopy(yuvData, offset, row, 0, width);
+		}
 		return row;
 	}
 
@@ -98,7 +119,7 @@ public class PlanarYUVLuminanceSource extends LuminanceSource {
 	public byte[] getMatrix() {
 		int width = getWidth();
 		int height = getHeight();
-		if (width == dataSize.width && height == dataSize.height) {
+		if (width == dataSize.width && height == dataSize.height && !isInverted) {
 			return yuvData;
 		}
 		int area = width * height;
@@ -106,19 +127,33 @@ public class PlanarYUVLuminanceSource extends LuminanceSource {
 		int inputOffset = previewRect.top * dataSize.width + previewRect.left;
 
 		if (width == dataSize.width) {
-			System.arraycopy(yuvData, inputOffset, matrix, 0, area);
+			if (isInverted) {
+				invertCopy(yuvData, inputOffset, matrix, 0, area);
+			} else {
+				System.arraycopy(yuvData, inputOffset, matrix, 0, area);
+			}
 			return matrix;
 		}
 
 		byte[] yuv = yuvData;
 		for (int y = 0; y < height; y++) {
 			int outputOffset = y * width;
-			System.arraycopy(yuv, inputOffset, matrix, outputOffset, width);
+			if (isInverted) {
+				invertCopy(yuv, inputOffset, matrix, outputOffset, width);
+			} else {
+				System.arraycopy(yuv, inputOffset, matrix, outputOffset, width);
+			}
 			inputOffset += dataSize.width;
 		}
 		return matrix;
 	}
 
+	private static void invertCopy(byte[] src, int srcOffset, byte[] dest, int destOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			dest[destOffset + i] = (byte) (255 - (src[srcOffset + i] & 0xff));
+		}
+	}
+
 	@Override
 	public boolean isCropSupported() {
 		return true;
@@ -133,11 +168,11 @@ public class PlanarYUVLuminanceSource extends LuminanceSource {
 	}
 
 	/**
-	 * 根据扫描结果，生成一个灰度图像
+	 * 根据扫描结果，生成一个灰度图像，反色视图也按原始图像渲染
 	 * 
 	 * @return
 	 */
-	public Bitmap renderCroppedGreyScaleBitmap() {
+	public int[] renderCroppedGreyScalePixels() {
 		int width = getWidth();
 		int height = getHeight();
 		int[] pixels = new int[width * height];
@@ -152,8 +187,6 @@ public class PlanarYUVLuminanceSource extends LuminanceSource {
 			inputOffset += dataSize.width;
 		}
 
-		Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-		bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
-		return bitmap;
+		return pixels;
 	}
 }
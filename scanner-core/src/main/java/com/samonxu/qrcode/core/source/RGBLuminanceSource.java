@@ -1,11 +1,9 @@
-package com.samonxu.qrcode.demo.decode;
+package com.samonxu.qrcode.core.source;
 
-import android.graphics.Bitmap;
+import com.samonxu.qrcode.core.Size;
 
-import com.samonxu.qrcode.demo.camera.Size;
 
-
-public class RGBLuminanceSource extends LuminanceSource {
+public class RGBLuminanceSource extends BaseLuminanceSource {
 
 	private byte[] luminances;
 
@@ -50,7 +48,7 @@ public class RGBLuminanceSource extends LuminanceSource {
 		return row;
 	}
 
-	public Bitmap renderCroppedGreyScaleBitmap() {
+	public int[] renderCroppedGreyScalePixels() {
 		int width = getWidth();
 		int height = getHeight();
 		int[] pixels = new int[width * height];
@@ -60,9 +58,7 @@ public class RGBLuminanceSource extends LuminanceSource {
 				pixels[y * width + x] = 0xFF000000 | (grey * 0x00010101);
 			}
 		}
-		Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-		bitmap.setPixels(pixels, 0, width, 0, 0, width, height);
-		return bitmap;
+		return pixels;
 	}
 
 }
@@ -0,0 +1,101 @@
+package com.samonxu.qrcode.core.capture;
+
+import com.samonxu.qrcode.core.CropRect;
+import com.samonxu.qrcode.core.Size;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CaptureFileTest {
+	private static final Size SIZE = new Size(16, 8);
+	private static final CropRect CROP_RECT = new CropRect(2, 1, 14, 7);
+	private static final int FRAME_BYTES = CaptureFormat.FRAME_HEADER_SIZE + 16 * 8;
+
+	@Test
+	public void roundTrip() throws IOException {
+		File file = createTempFile();
+		CaptureWriter writer = new CaptureWriter(file);
+		for (int i = 0; i < 5; i++) {
+			assertTrue(writer.offer(createFrame(i), SIZE, CROP_RECT, 1000L * i));
+		}
+		writer.close();
+		assertEquals(5, writer.getFrameCount());
+		assertEquals(file.length(), writer.getBytesWritten());
+
+		CaptureReader reader = new CaptureReader(file);
+		assertTrue(reader.isIndexed());
+		assertEquals(5, reader.getFrameCount());
+		for (int i = 0; i < 5; i++) {
+			CapturedFrame frame = reader.getFrame(i);
+			assertEquals(i, frame.index);
+			assertEquals(1000L * i, frame.timestampNanos);
+			assertEquals(SIZE, frame.size);
+			assertEquals(CROP_RECT, frame.cropRect);
+			assertArrayEquals(createFrame(i), frame.data);
+		}
+	}
+
+	@Test
+	public void truncatedFileKeepsCompleteFrames() throws IOException {
+		File file = createTempFile();
+		CaptureWriter writer = new CaptureWriter(file);
+		for (int i = 0; i < 4; i++) {
+			writer.offer(createFrame(i), SIZE, CROP_RECT, i);
+		}
+		writer.close();
+		// Cut off the index and the second half of the last frame, as if the process died while recording
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(CaptureFormat.FILE_HEADER_SIZE + 3 * FRAME_BYTES + FRAME_BYTES / 2);
+		} finally {
+			raf.close();
+		}
+
+		CaptureReader reader = new CaptureReader(file);
+		assertFalse(reader.isIndexed());
+		assertEquals(3, reader.getFrameCount());
+		assertArrayEquals(createFrame(2), reader.getFrame(2).data);
+	}
+
+	@Test
+	public void stopsAcceptingFramesAtSizeLimit() throws IOException {
+		File file = createTempFile();
+		long maxBytes = CaptureFormat.FILE_HEADER_SIZE + CaptureFormat.INDEX_HEADER_SIZE + CaptureFormat.FOOTER_SIZE
+				+ 2 * (FRAME_BYTES + 8);
+		CaptureWriter writer = new CaptureWriter(file, 8, maxBytes);
+		assertTrue(writer.offer(createFrame(0), SIZE, CROP_RECT, 0));
+		assertTrue(writer.offer(createFrame(1), SIZE, CROP_RECT, 1));
+		assertFalse(writer.isFull());
+		assertFalse(writer.offer(createFrame(2), SIZE, CROP_RECT, 2));
+		assertTrue(writer.isFull());
+		assertEquals(0, writer.getDroppedFrames());
+		writer.close();
+		assertEquals(maxBytes, file.length());
+
+		CaptureReader reader = new CaptureReader(file);
+		assertTrue(reader.isIndexed());
+		assertEquals(2, reader.getFrameCount());
+	}
+
+	private static File createTempFile() throws IOException {
+		File file = File.createTempFile("capture", ".qrcap");
+		file.deleteOnExit();
+		return file;
+	}
+
+	private static byte[] createFrame(int seed) {
+		byte[] data = new byte[SIZE.size()];
+		Arrays.fill(data, (byte) seed);
+		data[seed] = (byte) 0xff;
+		return data;
+	}
+}
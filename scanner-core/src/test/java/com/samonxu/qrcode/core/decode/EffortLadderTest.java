@@ -0,0 +1,53 @@
+package com.samonxu.qrcode.core.decode;
+
+import com.google.zxing.BarcodeFormat;
+
+import org.junit.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EffortLadderTest {
+
+	@Test
+	public void mostFailedFramesStayAtFastLevel() {
+		EffortLadder ladder = new EffortLadder(new EffortPolicy());
+		int frames = 1000;
+		int fastFrames = 0;
+		for (int i = 0; i < frames; i++) {
+			if (ladder.getLevel() == EffortPolicy.LEVEL_FAST) {
+				fastFrames++;
+			}
+			ladder.onDecodeFinished(false);
+		}
+		// One escalated frame after every failuresPerLevel fast failures
+		int failuresPerLevel = new EffortPolicy().getFailuresPerLevel();
+		float expected = (float) failuresPerLevel / (failuresPerLevel + 1);
+		assertEquals(expected, (float) fastFrames / frames, 0.01f);
+	}
+
+	@Test
+	public void escalatedFramesRotateThroughHigherLevels() {
+		EffortLadder ladder = new EffortLadder(new EffortPolicy(EnumSet.of(BarcodeFormat.QR_CODE), 1, 0));
+		int[] expected = { EffortPolicy.LEVEL_FAST, EffortPolicy.LEVEL_ALL_FORMATS, EffortPolicy.LEVEL_FAST,
+				EffortPolicy.LEVEL_TRY_HARDER, EffortPolicy.LEVEL_FAST, EffortPolicy.LEVEL_PURE_BARCODE,
+				EffortPolicy.LEVEL_FAST, EffortPolicy.LEVEL_ALL_FORMATS };
+		for (int level : expected) {
+			assertEquals(level, ladder.getLevel());
+			ladder.onDecodeFinished(false);
+		}
+	}
+
+	@Test
+	public void successReturnsToFastLevel() {
+		EffortLadder ladder = new EffortLadder(new EffortPolicy(EnumSet.of(BarcodeFormat.QR_CODE), 1, 0));
+		ladder.onDecodeFinished(false);
+		assertTrue(ladder.getLevel() > EffortPolicy.LEVEL_FAST);
+		ladder.onDecodeFinished(true);
+		assertEquals(EffortPolicy.LEVEL_FAST, ladder.getLevel());
+		ladder.onDecodeFinished(false);
+		assertEquals(EffortPolicy.LEVEL_ALL_FORMATS, ladder.getLevel());
+	}
+}
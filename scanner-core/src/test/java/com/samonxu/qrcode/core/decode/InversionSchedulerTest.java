@@ -0,0 +1,88 @@
+package com.samonxu.qrcode.core.decode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class InversionSchedulerTest {
+
+	@Test
+	public void startsBiasedToNormalPolarity() {
+		InversionScheduler scheduler = new InversionScheduler();
+		int frames = 4 * InversionScheduler.OFF_POLARITY_INTERVAL;
+		assertEquals(frames / InversionScheduler.OFF_POLARITY_INTERVAL, countInverted(scheduler, frames));
+	}
+
+	@Test
+	public void invertedFramesReachBothPreprocessParities() {
+		InversionScheduler scheduler = new InversionScheduler();
+		boolean even = false;
+		boolean odd = false;
+		for (int i = 0; i < 4 * InversionScheduler.OFF_POLARITY_INTERVAL; i++) {
+			if (scheduler.nextFrameInverted()) {
+				even |= i % 2 == 0;
+				odd |= i % 2 != 0;
+			}
+		}
+		assertTrue(even);
+		assertTrue(odd);
+	}
+
+	@Test
+	public void invertedSuccessPrefersInverted() {
+		InversionScheduler scheduler = new InversionScheduler();
+		scheduler.onDecodeFinished(true, true);
+		assertTrue(scheduler.isInvertedPreferred());
+		int frames = 4 * InversionScheduler.OFF_POLARITY_INTERVAL;
+		assertEquals(frames - frames / InversionScheduler.OFF_POLARITY_INTERVAL, countInverted(scheduler, frames));
+	}
+
+	@Test
+	public void normalSuccessLeavesInvertedPreferred() {
+		InversionScheduler scheduler = new InversionScheduler();
+		scheduler.onDecodeFinished(true, true);
+		assertTrue(scheduler.isInvertedPreferred());
+		scheduler.onDecodeFinished(false, true);
+		assertFalse(scheduler.isInvertedPreferred());
+		assertFalse(countInverted(scheduler, InversionScheduler.OFF_POLARITY_INTERVAL) > 1);
+	}
+
+	@Test
+	public void missesLeaveInvertedPreferred() {
+		InversionScheduler scheduler = new InversionScheduler();
+		scheduler.onDecodeFinished(true, true);
+		for (int i = 0; i < InversionScheduler.MISSES_BEFORE_SEARCHING - 1; i++) {
+			scheduler.onDecodeFinished(true, false);
+		}
+		assertTrue(scheduler.isInvertedPreferred());
+		scheduler.onDecodeFinished(true, false);
+		assertFalse(scheduler.isInvertedPreferred());
+		// Back to the normal polarity bias
+		int frames = 4 * InversionScheduler.OFF_POLARITY_INTERVAL;
+		assertEquals(frames / InversionScheduler.OFF_POLARITY_INTERVAL, countInverted(scheduler, frames));
+	}
+
+	@Test
+	public void successResetsMisses() {
+		InversionScheduler scheduler = new InversionScheduler();
+		scheduler.onDecodeFinished(true, true);
+		for (int i = 0; i < InversionScheduler.MISSES_BEFORE_SEARCHING - 1; i++) {
+			scheduler.onDecodeFinished(true, false);
+		}
+		scheduler.onDecodeFinished(true, true);
+		scheduler.onDecodeFinished(true, false);
+		assertTrue(scheduler.isInvertedPreferred());
+	}
+
+	private static int countInverted(InversionScheduler scheduler, int frames) {
+		int inverted = 0;
+		for (int i = 0; i < frames; i++) {
+			if (scheduler.nextFrameInverted()) {
+				inverted++;
+			}
+		}
+		return inverted;
+	}
+}